@@ -0,0 +1,282 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+
+/**
+ * Build step that fingerprints and precompresses the static assets, run by both the Maven
+ * and the Gradle build after the resources have been processed:
+ *
+ * <pre>
+ * java -cp &lt;classpath&gt; src/build/AssetPipeline.java &lt;classes dir&gt; &lt;include&gt;...
+ * </pre>
+ *
+ * The includes are globs of logical paths, the paths the templates link to:
+ * <code>resources/**</code> matches the files below <code>static/resources</code> of the
+ * classes directory, <code>webjars/htmx.org/dist/htmx.min.js</code> the file of the
+ * htmx.org WebJar on the classpath, whatever its version. Every matching file is written
+ * to the <code>assets</code> directory with a hash of its content in the file name, along
+ * with a gzip and a brotli variant when those are smaller. Relative
+ * <code>url(...)</code> references of style sheets are rewritten to the fingerprinted
+ * files. The logical paths and the paths of their fingerprinted files are listed in
+ * <code>assets-manifest.properties</code>, which the application resolves links from.
+ */
+public class AssetPipeline {
+
+	private static final String WEBJARS = "META-INF/resources/webjars/";
+
+	private static final Set<String> COMPRESSIBLE = Set.of("css", "eot", "html", "js", "json", "map", "svg", "ttf",
+			"txt", "xml");
+
+	private static final Pattern CSS_URL = Pattern.compile("url\\(\\s*(['\"]?)([^'\")]+)\\1\\s*\\)");
+
+	public static void main(String[] args) throws IOException {
+		Path classes = Path.of(args[0]);
+		List<PathMatcher> includes = Arrays.stream(args, 1, args.length)
+			.map(include -> FileSystems.getDefault().getPathMatcher("glob:" + include))
+			.toList();
+
+		Map<String, byte[]> sources = new TreeMap<>();
+		readStaticResources(classes.resolve("static"), includes, sources);
+		readWebJars(includes, sources);
+
+		Path assets = classes.resolve("assets");
+		delete(assets);
+		Brotli4jLoader.ensureAvailability();
+		Map<String, String> manifest = new TreeMap<>();
+		// style sheets last, the files they refer to need to be fingerprinted first
+		List<String> paths = new ArrayList<>(sources.keySet());
+		paths.sort(Comparator.comparing(path -> path.endsWith(".css")));
+		for (String path : paths) {
+			byte[] content = sources.get(path);
+			if (path.endsWith(".css")) {
+				content = rewriteUrls(path, new String(content, StandardCharsets.UTF_8), manifest)
+					.getBytes(StandardCharsets.UTF_8);
+			}
+			String fingerprinted = fingerprint(path, content);
+			write(assets.resolve(fingerprinted), content);
+			manifest.put(path, fingerprinted);
+		}
+
+		StringBuilder properties = new StringBuilder("# generated by src/build/AssetPipeline.java\n");
+		manifest.forEach((path, fingerprinted) -> properties.append(path).append('=').append(fingerprinted).append('\n'));
+		Files.writeString(classes.resolve("assets-manifest.properties"), properties, StandardCharsets.ISO_8859_1);
+		System.out.println("Fingerprinted and precompressed " + manifest.size() + " assets into " + assets);
+	}
+
+	private static void readStaticResources(Path root, List<PathMatcher> includes, Map<String, byte[]> sources)
+			throws IOException {
+		if (!Files.isDirectory(root)) {
+			return;
+		}
+		try (Stream<Path> files = Files.walk(root)) {
+			for (Path file : files.filter(Files::isRegularFile).toList()) {
+				String path = root.relativize(file).toString().replace(File.separatorChar, '/');
+				if (matches(path, includes)) {
+					sources.put(path, Files.readAllBytes(file));
+				}
+			}
+		}
+	}
+
+	private static void readWebJars(List<PathMatcher> includes, Map<String, byte[]> sources) throws IOException {
+		for (String element : System.getProperty("java.class.path").split(File.pathSeparator)) {
+			Path location = Path.of(element);
+			if (Files.isDirectory(location.resolve(WEBJARS))) {
+				try (Stream<Path> files = Files.walk(location.resolve(WEBJARS))) {
+					for (Path file : files.filter(Files::isRegularFile).toList()) {
+						String name = location.relativize(file).toString().replace(File.separatorChar, '/');
+						readWebJarFile(name, includes, sources, () -> Files.readAllBytes(file));
+					}
+				}
+			}
+			else if (element.endsWith(".jar") && Files.isRegularFile(location)) {
+				try (JarFile jar = new JarFile(location.toFile())) {
+					for (JarEntry entry : jar.stream().filter(entry -> !entry.isDirectory()).toList()) {
+						readWebJarFile(entry.getName(), includes, sources, () -> {
+							try (InputStream in = jar.getInputStream(entry)) {
+								return in.readAllBytes();
+							}
+						});
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read a file of a WebJar, <code>META-INF/resources/webjars/&lt;name&gt;/&lt;version&gt;/&lt;path&gt;</code>,
+	 * as <code>webjars/&lt;name&gt;/&lt;path&gt;</code> when it is included.
+	 */
+	private static void readWebJarFile(String name, List<PathMatcher> includes, Map<String, byte[]> sources,
+			Content content) throws IOException {
+		if (!name.startsWith(WEBJARS)) {
+			return;
+		}
+		String[] segments = name.substring(WEBJARS.length()).split("/", 3);
+		if (segments.length < 3) {
+			return;
+		}
+		String path = "webjars/" + segments[0] + "/" + segments[2];
+		if (matches(path, includes)) {
+			sources.put(path, content.read());
+		}
+	}
+
+	private static boolean matches(String path, List<PathMatcher> includes) {
+		Path candidate = Path.of(path);
+		return includes.stream().anyMatch(include -> include.matches(candidate));
+	}
+
+	/**
+	 * Point the relative <code>url(...)</code> references of the style sheet at the given
+	 * path to the fingerprinted files, keeping queries and fragments.
+	 */
+	private static String rewriteUrls(String path, String css, Map<String, String> manifest) {
+		Path directory = Path.of(path).getParent();
+		Matcher matcher = CSS_URL.matcher(css);
+		StringBuilder rewritten = new StringBuilder();
+		while (matcher.find()) {
+			String url = matcher.group(2).trim();
+			int suffix = indexOfAny(url, '?', '#');
+			String target = url.substring(0, suffix);
+			String replacement = matcher.group();
+			if (!target.isEmpty() && !target.contains(":") && !target.startsWith("/")) {
+				String resolved = directory.resolve(target).normalize().toString().replace(File.separatorChar, '/');
+				String fingerprinted = manifest.get(resolved);
+				if (fingerprinted != null) {
+					String name = fingerprinted.substring(fingerprinted.lastIndexOf('/') + 1);
+					String prefix = target.substring(0, target.lastIndexOf('/') + 1);
+					replacement = "url(" + matcher.group(1) + prefix + name + url.substring(suffix) + matcher.group(1)
+							+ ")";
+				}
+			}
+			matcher.appendReplacement(rewritten, Matcher.quoteReplacement(replacement));
+		}
+		matcher.appendTail(rewritten);
+		return rewritten.toString();
+	}
+
+	private static int indexOfAny(String value, char... chars) {
+		int index = value.length();
+		for (char c : chars) {
+			int found = value.indexOf(c);
+			if (found >= 0 && found < index) {
+				index = found;
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Insert the first 16 hex digits of the SHA-256 hash of the content before the
+	 * extension of the file name, <code>htmx.min.js</code> becomes
+	 * <code>htmx.min.0123456789abcdef.js</code>.
+	 */
+	private static String fingerprint(String path, byte[] content) {
+		String hash;
+		try {
+			hash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content), 0, 8);
+		}
+		catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+		int slash = path.lastIndexOf('/');
+		int dot = path.lastIndexOf('.');
+		return dot > slash ? path.substring(0, dot) + "." + hash + path.substring(dot) : path + "." + hash;
+	}
+
+	private static void write(Path file, byte[] content) throws IOException {
+		Files.createDirectories(file.getParent());
+		Files.write(file, content);
+		String name = file.getFileName().toString();
+		if (!COMPRESSIBLE.contains(name.substring(name.lastIndexOf('.') + 1))) {
+			return;
+		}
+		byte[] gzip = gzip(content);
+		if (gzip.length < content.length) {
+			Files.write(file.resolveSibling(name + ".gz"), gzip);
+		}
+		byte[] brotli = Encoder.compress(content, new Encoder.Parameters().setQuality(11));
+		if (brotli.length < content.length) {
+			Files.write(file.resolveSibling(name + ".br"), brotli);
+		}
+	}
+
+	private static byte[] gzip(byte[] content) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+			{
+				this.def.setLevel(Deflater.BEST_COMPRESSION);
+			}
+		}) {
+			gzip.write(content);
+		}
+		return out.toByteArray();
+	}
+
+	private static void delete(Path directory) throws IOException {
+		if (!Files.exists(directory)) {
+			return;
+		}
+		try (Stream<Path> files = Files.walk(directory)) {
+			files.sorted(Comparator.reverseOrder()).forEach(file -> {
+				try {
+					Files.delete(file);
+				}
+				catch (IOException ex) {
+					throw new UncheckedIOException(ex);
+				}
+			});
+		}
+	}
+
+	private interface Content {
+
+		byte[] read() throws IOException;
+
+	}
+
+}
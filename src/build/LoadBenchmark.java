@@ -0,0 +1,283 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load test of the packaged application comparing request handling on platform threads
+ * with virtual threads, run by the Maven <code>load</code> profile after the jar has been
+ * built:
+ *
+ * <pre>
+ * java src/build/LoadBenchmark.java &lt;boot jar&gt; &lt;concurrency&gt; &lt;seconds&gt; [&lt;report file&gt;]
+ * </pre>
+ *
+ * The application is started once per mode: on the Tomcat platform-thread pool, and with
+ * <code>spring.threads.virtual.enabled=true</code> when the JVM running the benchmark is
+ * Java 21 or later. The given number of clients then request a mix of pages, most of them
+ * reading owners from the database, back to back for a warm-up of a third of the given
+ * time and for the measured time. The throughput, the median and p99 latency, the failed
+ * requests and the pinned virtual threads reported by the application are printed as a
+ * Markdown table, headed by the JVM and the hardware it ran on, which is also written to
+ * the report file if given.
+ */
+public class LoadBenchmark {
+
+	private static final Duration TIMEOUT = Duration.ofMinutes(2);
+
+	private static final int OWNERS = 10;
+
+	private static final String PINNED = "Virtual thread pinned its carrier";
+
+	private static final HttpClient client = HttpClient.newBuilder()
+		.version(HttpClient.Version.HTTP_1_1)
+		.connectTimeout(Duration.ofSeconds(5))
+		.build();
+
+	public static void main(String[] args) throws Exception {
+		Path bootJar = Path.of(args[0]).toAbsolutePath();
+		int concurrency = Integer.parseInt(args[1]);
+		Duration duration = Duration.ofSeconds(Long.parseLong(args[2]));
+
+		StringBuilder report = new StringBuilder();
+		report.append("Load of ").append(bootJar.getFileName()).append(", ").append(concurrency);
+		report.append(" clients for ").append(duration.toSeconds()).append(" s, Java ");
+		report.append(System.getProperty("java.version")).append(" on ").append(System.getProperty("os.name"));
+		report.append(' ').append(System.getProperty("os.arch")).append(" with ");
+		report.append(Runtime.getRuntime().availableProcessors()).append(" CPUs, ").append(LocalDate.now());
+		report.append("\n\n");
+		report.append("| mode | requests/s | p50 | p99 | max | failed | pinned |\n");
+		report.append("|---|---:|---:|---:|---:|---:|---:|\n");
+		report.append(run(bootJar, "platform", List.of(), concurrency, duration));
+		if (Runtime.version().feature() >= 21) {
+			report.append(run(bootJar, "virtual", List.of("--spring.threads.virtual.enabled=true"), concurrency,
+					duration));
+		}
+		else {
+			report.append("| virtual | n/a, needs Java 21 | | | | | |\n");
+		}
+		System.out.println();
+		System.out.println(report);
+		if (args.length > 3) {
+			Files.writeString(Path.of(args[3]), report);
+		}
+	}
+
+	private static String run(Path bootJar, String mode, List<String> arguments, int concurrency, Duration duration)
+			throws Exception {
+		Application application = Application.start(bootJar, arguments);
+		try {
+			application.awaitFirstRequest();
+			load(application, concurrency, duration.dividedBy(3));
+			Result result = load(application, concurrency, duration);
+			return String.format("| %s | %.0f | %.1f ms | %.1f ms | %.1f ms | %d | %d |%n", mode,
+					result.latencies().length / (double) duration.toSeconds(), millis(result.percentile(0.5)),
+					millis(result.percentile(0.99)), millis(result.percentile(1)), result.failed(),
+					application.count(PINNED));
+		}
+		finally {
+			application.stop();
+		}
+	}
+
+	/**
+	 * Let every client request pages back to back until the time is up.
+	 */
+	private static Result load(Application application, int concurrency, Duration duration) throws Exception {
+		long deadline = System.nanoTime() + duration.toNanos();
+		AtomicInteger failed = new AtomicInteger();
+		ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+		try {
+			List<Future<List<Long>>> futures = new ArrayList<>();
+			for (int i = 0; i < concurrency; i++) {
+				futures.add(clients.submit(() -> {
+					List<Long> latencies = new ArrayList<>();
+					while (System.nanoTime() < deadline) {
+						long start = System.nanoTime();
+						try {
+							if (application.get(path()) == 200) {
+								latencies.add(System.nanoTime() - start);
+							}
+							else {
+								failed.incrementAndGet();
+							}
+						}
+						catch (IOException ex) {
+							failed.incrementAndGet();
+						}
+					}
+					return latencies;
+				}));
+			}
+			List<Long> latencies = new ArrayList<>();
+			for (Future<List<Long>> future : futures) {
+				latencies.addAll(future.get());
+			}
+			long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+			return new Result(sorted, failed.get());
+		}
+		finally {
+			clients.shutdownNow();
+		}
+	}
+
+	private static String path() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int owner = random.nextInt(OWNERS) + 1;
+		return switch (random.nextInt(4)) {
+			case 0 -> "/owners?lastName=";
+			case 1 -> "/owners/" + owner + "/edit";
+			case 2 -> "/owners/" + owner;
+			default -> "/vets.html";
+		};
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1_000_000.0;
+	}
+
+	/**
+	 * The sorted latencies in nanoseconds of the successful requests and the number of
+	 * failed ones.
+	 */
+	private record Result(long[] latencies, int failed) {
+
+		long percentile(double percentile) {
+			if (this.latencies.length == 0) {
+				return 0;
+			}
+			int index = (int) Math.ceil(percentile * this.latencies.length) - 1;
+			return this.latencies[Math.max(0, Math.min(index, this.latencies.length - 1))];
+		}
+
+	}
+
+	/**
+	 * A running application on a free port, its output is kept to count the reported
+	 * pinned threads.
+	 */
+	private static final class Application {
+
+		private final Process process;
+
+		private final int port;
+
+		private final StringBuilder output = new StringBuilder();
+
+		private Application(Process process, int port) {
+			this.process = process;
+			this.port = port;
+		}
+
+		static Application start(Path bootJar, List<String> arguments) throws IOException {
+			int port;
+			try (ServerSocket socket = new ServerSocket(0)) {
+				port = socket.getLocalPort();
+			}
+			List<String> command = new ArrayList<>();
+			command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+			command.addAll(List.of("-jar", bootJar.toString(), "--server.port=" + port,
+					"--spring.main.banner-mode=off"));
+			command.addAll(arguments);
+			Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+			Application application = new Application(process, port);
+			Thread reader = new Thread(application::readOutput, "load-benchmark-output");
+			reader.setDaemon(true);
+			reader.start();
+			return application;
+		}
+
+		private void readOutput() {
+			try (BufferedReader lines = new BufferedReader(
+					new InputStreamReader(this.process.getInputStream(), StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = lines.readLine()) != null) {
+					synchronized (this.output) {
+						this.output.append(line).append('\n');
+					}
+				}
+			}
+			catch (IOException ex) {
+				// closed when the process was destroyed
+			}
+		}
+
+		void awaitFirstRequest() throws Exception {
+			long deadline = System.nanoTime() + TIMEOUT.toNanos();
+			while (System.nanoTime() < deadline) {
+				if (!this.process.isAlive()) {
+					throw new IllegalStateException("The application exited:\n" + output());
+				}
+				try {
+					if (get("/") == 200) {
+						return;
+					}
+				}
+				catch (ConnectException ex) {
+					// not listening yet
+				}
+				Thread.sleep(100);
+			}
+			throw new IllegalStateException("The application did not serve / within " + TIMEOUT + ":\n" + output());
+		}
+
+		int get(String path) throws IOException, InterruptedException {
+			HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + this.port + path))
+				.timeout(TIMEOUT)
+				.build();
+			return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+		}
+
+		void stop() throws InterruptedException {
+			this.process.destroy();
+			if (!this.process.waitFor(TIMEOUT.toSeconds(), TimeUnit.SECONDS)) {
+				this.process.destroyForcibly().waitFor();
+			}
+		}
+
+		long count(String message) {
+			return output().lines().filter(line -> line.contains(message)).count();
+		}
+
+		private String output() {
+			synchronized (this.output) {
+				return this.output.toString();
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,430 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+
+import com.sun.management.OperatingSystemMXBean;
+
+/**
+ * Startup benchmark of the packaged application, run by the Maven <code>startup</code>
+ * profile after the jar has been built:
+ *
+ * <pre>
+ * java src/build/StartupBenchmark.java &lt;boot jar&gt; &lt;work dir&gt; &lt;runs&gt; [&lt;report file&gt; [&lt;native executable&gt;]]
+ * </pre>
+ *
+ * The Spring Boot jar is extracted into the work directory as a plain <code>app.jar</code>
+ * with its dependencies next to it in <code>lib</code>, the layout the JVM can archive
+ * classes from. For every variant a training run, which starts the application and serves
+ * a few pages, writes its AppCDS archive. After one discarded run each, the variants are
+ * started the given number of times in rounds of one run per variant, measuring the time
+ * from launching the JVM until the application logged that it started (time-to-ready) and
+ * until <code>/</code> was served for the first time (time-to-first-request), along with
+ * the resident set size of the process right after that first request where
+ * <code>/proc</code> tells it. The variants are the plain JVM, the Spring AOT
+ * initialization when the jar contains it, both again with their AppCDS archive, and the
+ * native executable of the native profile if given. The medians and minimums, and the
+ * median time-to-ready relative to the plain JVM, are printed as a Markdown table headed
+ * by the JVM and the hardware it ran on, which is also written to the report file if
+ * given.
+ */
+public class StartupBenchmark {
+
+	private static final Duration TIMEOUT = Duration.ofMinutes(2);
+
+	private static final List<String> TRAINING_PATHS = List.of("/", "/owners/find", "/owners?lastName=", "/owners/1",
+			"/vets.html", "/vets");
+
+	private static final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+
+	public static void main(String[] args) throws Exception {
+		Path bootJar = Path.of(args[0]);
+		Path work = Path.of(args[1]).toAbsolutePath();
+		int runs = Integer.parseInt(args[2]);
+
+		boolean aot = extract(bootJar, work);
+		List<Variant> variants = new ArrayList<>();
+		variants.add(new Variant("jvm", null, List.of()));
+		if (aot) {
+			variants.add(new Variant("aot", null, List.of("-Dspring.aot.enabled=true")));
+		}
+		for (Variant variant : List.copyOf(variants)) {
+			Path archive = work.resolve(variant.name() + ".jsa");
+			train(work, variant, archive);
+			List<String> options = new ArrayList<>(variant.options());
+			// relative to the work directory the JVMs run in
+			options.add("-XX:SharedArchiveFile=" + work.relativize(archive));
+			variants.add(new Variant(variant.name() + "+cds", null, options));
+		}
+		boolean nativeImage = args.length > 4 && !args[4].isBlank() && Files.isExecutable(Path.of(args[4]));
+		if (nativeImage) {
+			variants.add(new Variant("native", Path.of(args[4]).toAbsolutePath().toString(), List.of()));
+		}
+
+		Map<Variant, List<Timing>> timings = new LinkedHashMap<>();
+		for (Variant variant : variants) {
+			start(work, variant);
+			timings.put(variant, new ArrayList<>());
+		}
+		// one run of every variant per round, so a machine getting slower or faster over
+		// time skews all variants alike
+		for (int i = 0; i < runs; i++) {
+			for (Variant variant : variants) {
+				timings.get(variant).add(start(work, variant));
+			}
+		}
+
+		OperatingSystemMXBean os = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+		StringBuilder report = new StringBuilder();
+		report.append("Startup of ").append(bootJar.getFileName()).append(", ").append(runs);
+		report.append(" interleaved runs each, Java ").append(System.getProperty("java.version")).append(" (");
+		report.append(System.getProperty("java.vm.name")).append(") on ").append(System.getProperty("os.name"));
+		report.append(' ').append(System.getProperty("os.arch")).append(" with ").append(os.getAvailableProcessors());
+		report.append(" CPUs and ").append(os.getTotalMemorySize() / (1024 * 1024 * 1024)).append(" GB, ");
+		report.append(LocalDate.now()).append(". The JVMs run with their default heap and GC, and only the ");
+		report.append("options listed. Absolute times vary with the machine, compare the variants relative ");
+		report.append("to jvm.\n\n");
+		report.append("| variant | options | time-to-ready median | min | relative | time-to-first-request median ");
+		report.append("| min | RSS median |\n");
+		report.append("|---|---|---:|---:|---:|---:|---:|---:|\n");
+		long baseline = median(timings.get(variants.get(0)), Timing::ready);
+		timings.forEach((variant, variantTimings) -> {
+			long ready = median(variantTimings, Timing::ready);
+			long rss = median(variantTimings, Timing::rss);
+			report.append(String.format(Locale.ROOT, "| %s | %s | %d ms | %d ms | %.2f | %d ms | %d ms | %s |%n",
+					variant.name(), variant.options().isEmpty() ? "" : "`" + String.join(" ", variant.options()) + "`",
+					ready, min(variantTimings, Timing::ready), (double) ready / baseline,
+					median(variantTimings, Timing::firstRequest), min(variantTimings, Timing::firstRequest),
+					(rss >= 0) ? (rss / 1024) + " MB" : "n/a"));
+		});
+		if (!nativeImage) {
+			report.append("| native | n/a, needs a GraalVM build with the native profile | | | | | | |\n");
+		}
+		System.out.println();
+		System.out.println(report);
+		if (args.length > 3) {
+			Files.writeString(Path.of(args[3]), report);
+		}
+	}
+
+	/**
+	 * Extract the Spring Boot jar into a jar of the application classes, whose manifest
+	 * lists the dependencies in the order of the Boot class path index.
+	 * @return whether the application classes include the Spring AOT initialization
+	 */
+	private static boolean extract(Path bootJar, Path work) throws IOException {
+		delete(work);
+		Path lib = Files.createDirectories(work.resolve("lib"));
+		try (JarFile jar = new JarFile(bootJar.toFile())) {
+			Manifest boot = jar.getManifest();
+			String startClass = boot.getMainAttributes().getValue("Start-Class");
+			List<String> classPath = new ArrayList<>();
+			for (String line : new String(read(jar, jar.getJarEntry("BOOT-INF/classpath.idx")), StandardCharsets.UTF_8)
+				.split("\n")) {
+				String entry = line.replaceAll("^- \"(.*)\"$", "$1");
+				if (!entry.isBlank()) {
+					Path target = lib.resolve(entry.substring(entry.lastIndexOf('/') + 1));
+					Files.write(target, read(jar, jar.getJarEntry(entry)));
+					classPath.add(work.relativize(target).toString().replace('\\', '/'));
+				}
+			}
+
+			Manifest manifest = new Manifest();
+			Attributes attributes = manifest.getMainAttributes();
+			attributes.put(Attributes.Name.MANIFEST_VERSION, "1.0");
+			attributes.put(Attributes.Name.MAIN_CLASS, startClass);
+			attributes.put(Attributes.Name.CLASS_PATH, String.join(" ", classPath));
+			String initializer = "BOOT-INF/classes/" + startClass.replace('.', '/') + "__ApplicationContextInitializer.class";
+			try (JarOutputStream app = new JarOutputStream(Files.newOutputStream(work.resolve("app.jar")), manifest)) {
+				Set<String> written = new HashSet<>(Set.of("META-INF/", JarFile.MANIFEST_NAME));
+				for (JarEntry entry : jar.stream().toList()) {
+					String name = entry.getName();
+					// the build info and Maven metadata are kept next to the loader
+					if (name.startsWith("META-INF/") && !name.startsWith("META-INF/services/")) {
+						copy(jar, entry, name, app, written);
+					}
+					else if (name.startsWith("BOOT-INF/classes/")) {
+						copy(jar, entry, name.substring("BOOT-INF/classes/".length()), app, written);
+					}
+				}
+			}
+			return jar.getJarEntry(initializer) != null;
+		}
+	}
+
+	/**
+	 * Start the application with the given variant, serve the training pages and stop it
+	 * again, the JVM writes the classes it loaded to the archive when it exits.
+	 */
+	private static void train(Path work, Variant variant, Path archive) throws Exception {
+		Application application = Application.start(work,
+				variant.command(List.of("-XX:ArchiveClassesAtExit=" + archive, "-Xlog:cds=error")));
+		try {
+			application.awaitFirstRequest();
+			for (String path : TRAINING_PATHS) {
+				application.get(path);
+			}
+		}
+		finally {
+			application.stop();
+		}
+		if (!Files.isRegularFile(archive)) {
+			throw new IllegalStateException("The training run of " + variant.name() + " wrote no archive");
+		}
+	}
+
+	private static Timing start(Path work, Variant variant) throws Exception {
+		Application application = Application.start(work, variant.command(List.of()));
+		try {
+			long firstRequest = application.awaitFirstRequest();
+			return new Timing(application.ready.get(TIMEOUT.toSeconds(), TimeUnit.SECONDS), firstRequest,
+					application.rss());
+		}
+		finally {
+			application.stop();
+		}
+	}
+
+	private static long median(List<Timing> timings, ToLongFunction<Timing> value) {
+		long[] sorted = timings.stream().mapToLong(value).sorted().toArray();
+		return sorted[sorted.length / 2];
+	}
+
+	private static long min(List<Timing> timings, ToLongFunction<Timing> value) {
+		return timings.stream().mapToLong(value).min().orElse(0);
+	}
+
+	private static void copy(JarFile jar, JarEntry entry, String name, JarOutputStream app, Set<String> written)
+			throws IOException {
+		if (name.isEmpty() || !written.add(name)) {
+			return;
+		}
+		app.putNextEntry(new JarEntry(name));
+		if (!entry.isDirectory()) {
+			app.write(read(jar, entry));
+		}
+		app.closeEntry();
+	}
+
+	private static byte[] read(JarFile jar, JarEntry entry) throws IOException {
+		try (InputStream in = jar.getInputStream(entry)) {
+			return in.readAllBytes();
+		}
+	}
+
+	private static void delete(Path directory) throws IOException {
+		if (!Files.exists(directory)) {
+			return;
+		}
+		try (Stream<Path> files = Files.walk(directory)) {
+			for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+				Files.delete(file);
+			}
+		}
+	}
+
+	/**
+	 * A way of starting the application: the native executable, or the JVM running the
+	 * extracted jar with the given options.
+	 */
+	private record Variant(String name, String executable, List<String> options) {
+
+		List<String> command(List<String> extraOptions) {
+			List<String> command = new ArrayList<>();
+			if (this.executable != null) {
+				command.add(this.executable);
+				command.addAll(this.options);
+				return command;
+			}
+			command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+			command.addAll(this.options);
+			command.addAll(extraOptions);
+			command.addAll(List.of("-jar", "app.jar"));
+			return command;
+		}
+
+	}
+
+	/**
+	 * Milliseconds from launching the process until the application was ready and until
+	 * it served its first request, and its resident set size in kB after that request, -1
+	 * if unknown.
+	 */
+	private record Timing(long ready, long firstRequest, long rss) {
+
+	}
+
+	/**
+	 * A running application on a free port, its output is scanned for the log line
+	 * announcing that it started.
+	 */
+	private static final class Application {
+
+		private final Process process;
+
+		private final int port;
+
+		private final long launched;
+
+		private final CompletableFuture<Long> ready = new CompletableFuture<>();
+
+		private final StringBuilder output = new StringBuilder();
+
+		private Application(Process process, int port, long launched) {
+			this.process = process;
+			this.port = port;
+			this.launched = launched;
+		}
+
+		static Application start(Path work, List<String> command) throws IOException {
+			int port;
+			try (ServerSocket socket = new ServerSocket(0)) {
+				port = socket.getLocalPort();
+			}
+			command = new ArrayList<>(command);
+			command.addAll(List.of("--server.port=" + port, "--spring.main.banner-mode=off"));
+			long launched = System.nanoTime();
+			Process process = new ProcessBuilder(command).directory(work.toFile()).redirectErrorStream(true).start();
+			Application application = new Application(process, port, launched);
+			Thread reader = new Thread(application::readOutput, "startup-benchmark-output");
+			reader.setDaemon(true);
+			reader.start();
+			return application;
+		}
+
+		private void readOutput() {
+			try (BufferedReader lines = new BufferedReader(
+					new InputStreamReader(this.process.getInputStream(), StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = lines.readLine()) != null) {
+					synchronized (this.output) {
+						this.output.append(line).append('\n');
+					}
+					if (!this.ready.isDone() && line.contains("Started ") && line.contains("process running for")) {
+						this.ready.complete(elapsed());
+					}
+				}
+			}
+			catch (IOException ex) {
+				// closed when the process was destroyed
+			}
+			finally {
+				this.ready.completeExceptionally(new IllegalStateException("Exited before it started"));
+			}
+		}
+
+		/**
+		 * Poll <code>/</code> until it is served.
+		 * @return the milliseconds from launching the JVM until then
+		 */
+		long awaitFirstRequest() throws Exception {
+			long deadline = System.nanoTime() + TIMEOUT.toNanos();
+			while (System.nanoTime() < deadline) {
+				if (!this.process.isAlive()) {
+					throw new IllegalStateException("The application exited:\n" + output());
+				}
+				try {
+					if (get("/") == 200) {
+						return elapsed();
+					}
+				}
+				catch (ConnectException ex) {
+					// not listening yet
+				}
+				Thread.sleep(5);
+			}
+			throw new IllegalStateException("The application did not serve / within " + TIMEOUT + ":\n" + output());
+		}
+
+		int get(String path) throws IOException, InterruptedException {
+			HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + this.port + path))
+				.timeout(TIMEOUT)
+				.build();
+			return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+		}
+
+		/**
+		 * Stop the application gracefully, so that a JVM writing an archive finishes it.
+		 */
+		void stop() throws InterruptedException {
+			this.process.destroy();
+			if (!this.process.waitFor(TIMEOUT.toSeconds(), TimeUnit.SECONDS)) {
+				this.process.destroyForcibly().waitFor();
+			}
+		}
+
+		/**
+		 * Return the resident set size of the process.
+		 * @return the size in kB, -1 if unknown
+		 */
+		long rss() throws IOException {
+			Path status = Path.of("/proc", Long.toString(this.process.pid()), "status");
+			if (!Files.isReadable(status)) {
+				return -1;
+			}
+			return Files.readAllLines(status)
+				.stream()
+				.filter(line -> line.startsWith("VmRSS:"))
+				.mapToLong(line -> Long.parseLong(line.replaceAll("\\D", "")))
+				.findFirst()
+				.orElse(-1);
+		}
+
+		private long elapsed() {
+			return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.launched);
+		}
+
+		private String output() {
+			synchronized (this.output) {
+				return this.output.toString();
+			}
+		}
+
+	}
+
+}
@@ -16,16 +16,80 @@
 
 package org.springframework.samples.petclinic;
 
+import java.util.List;
+
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
 import org.springframework.aot.hint.RuntimeHints;
 import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.samples.petclinic.model.BaseEntity;
+import org.springframework.samples.petclinic.model.NamedEntity;
+import org.springframework.samples.petclinic.model.Person;
+import org.springframework.samples.petclinic.owner.OwnerDetails;
+import org.springframework.samples.petclinic.owner.OwnerExportRow;
+import org.springframework.samples.petclinic.owner.OwnerImporter;
+import org.springframework.samples.petclinic.owner.OwnerSummary;
+import org.springframework.samples.petclinic.owner.PetDetails;
+import org.springframework.samples.petclinic.owner.VisitSummary;
+import org.springframework.samples.petclinic.vet.Specialty;
+import org.springframework.samples.petclinic.vet.Vet;
+import org.springframework.samples.petclinic.vet.Vets;
+import org.springframework.util.ClassUtils;
 
+/**
+ * Runtime hints of what the application loads by name, beyond what Spring AOT and the
+ * reachability metadata of the libraries cover: the templates with their htmx fragments,
+ * the asset manifest, the types bound by JAXB and Jackson outside of the message
+ * converters, and the values the JCache caches copy by serialization.
+ */
 public class PetClinicRuntimeHints implements RuntimeHintsRegistrar {
 
+	private static final List<String> SERIALIZED_TYPES = List.of("java.lang.Integer", "java.lang.Long",
+			"java.lang.Number", "java.util.ArrayList", "java.util.CollSer", "java.util.HashSet",
+			"java.util.LinkedHashSet", "java.util.Locale",
+			"org.springframework.samples.petclinic.system.FragmentCache$Key",
+			"org.springframework.samples.petclinic.system.FragmentCache$Rendered",
+			"org.hibernate.cache.internal.BasicCacheKeyImplementation",
+			"org.hibernate.cache.internal.CacheKeyImplementation",
+			"org.hibernate.cache.internal.QueryResultsCacheImpl$CacheItem", "org.hibernate.cache.spi.QueryKey",
+			"org.hibernate.cache.spi.QueryKey$ParameterBindingsMemento",
+			"org.hibernate.cache.spi.entry.CollectionCacheEntry",
+			"org.hibernate.cache.spi.entry.StandardCacheEntryImpl", "org.hibernate.collection.spi.PersistentSet");
+
+	private final BindingReflectionHintsRegistrar bindings = new BindingReflectionHintsRegistrar();
+
 	@Override
 	public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
 		hints.resources().registerPattern("db/*"); // https://github.com/spring-projects/spring-boot/issues/32654
 		hints.resources().registerPattern("messages/*");
 		hints.resources().registerPattern("META-INF/resources/webjars/*");
+		hints.resources().registerPattern("templates/**");
+		hints.resources().registerPattern("assets-manifest.properties");
+		hints.resources().registerPattern("assets/**");
+		// defaults of the Caffeine JCache provider
+		hints.resources().registerPattern("reference.conf");
+
+		// the vets resource is pre-encoded by JAXB, which binds fields and accessors
+		for (Class<?> type : List.of(Vets.class, Vet.class, Specialty.class, Person.class, NamedEntity.class,
+				BaseEntity.class)) {
+			hints.reflection()
+				.registerType(type, MemberCategory.DECLARED_FIELDS, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+						MemberCategory.INVOKE_PUBLIC_METHODS);
+		}
+		// and by Jackson, as are the rows of the owner import and export
+		this.bindings.registerReflectionHints(hints.reflection(), Vets.class, OwnerExportRow.class,
+				OwnerImporter.Report.class, ClassUtils.resolveClassName(
+						"org.springframework.samples.petclinic.owner.OwnerImportFormat$OwnerRow", classLoader));
+
+		// the read-only view models are rendered by the templates through SpEL
+		for (Class<?> type : List.of(OwnerSummary.class, OwnerDetails.class, PetDetails.class, VisitSummary.class)) {
+			hints.reflection().registerType(type, MemberCategory.INVOKE_PUBLIC_METHODS);
+		}
+
+		hints.serialization().registerType(Vet.class);
+		hints.serialization().registerType(Specialty.class);
+		SERIALIZED_TYPES.forEach(type -> hints.serialization().registerType(TypeReference.of(type)));
 	}
 
 }
@@ -21,10 +21,14 @@ import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.MappedSuperclass;
+import jakarta.persistence.Version;
 
 /**
  * Simple JavaBean domain object with an id property. Used as a base class for objects
- * needing this property.
+ * needing this property. New ids are allocated from the <code>&lt;table&gt;_seq</code>
+ * sequence of each table, 50 at a time, so inserts of new objects can be batched. Every
+ * update increments the version of the object, an update of an object changed by someone
+ * else in the meantime fails instead of overwriting the other change.
  *
  * @author Ken Krebs
  * @author Juergen Hoeller
@@ -33,9 +37,12 @@ import jakarta.persistence.MappedSuperclass;
 public class BaseEntity implements Serializable {
 
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(strategy = GenerationType.SEQUENCE)
 	private Integer id;
 
+	@Version
+	private Integer version;
+
 	public Integer getId() {
 		return id;
 	}
@@ -44,6 +51,20 @@ public class BaseEntity implements Serializable {
 		this.id = id;
 	}
 
+	/**
+	 * Return the version of this object as last read from or written to the data store,
+	 * <code>null</code> while it is new. Forms carry it along to detect conflicting
+	 * changes, and it identifies the state of the object without another query.
+	 * @return the version
+	 */
+	public Integer getVersion() {
+		return version;
+	}
+
+	public void setVersion(Integer version) {
+		this.version = version;
+	}
+
 	public boolean isNew() {
 		return this.id == null;
 	}
@@ -16,9 +16,13 @@
 package org.springframework.samples.petclinic.owner;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.core.style.ToStringCreator;
+import org.springframework.data.domain.DomainEvents;
 import org.springframework.samples.petclinic.model.Person;
 import org.springframework.util.Assert;
 
@@ -44,6 +48,7 @@ import jakarta.validation.constraints.NotEmpty;
  */
 @Entity
 @Table(name = "owners")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Owner extends Person {
 
 	@Column(name = "address")
@@ -59,9 +64,18 @@ public class Owner extends Person {
 	@Digits(fraction = 0, integer = 10)
 	private String telephone;
 
+	/**
+	 * The lower-cased last name, generated by the database and indexed, so last name
+	 * searches are case-insensitive index range scans on every supported database. Only
+	 * meant for queries, the value is not refreshed when the last name changes.
+	 */
+	@Column(name = "last_name_key", insertable = false, updatable = false)
+	private String lastNameKey;
+
 	@OneToMany(cascade = CascadeType.ALL, fetch = FetchType.EAGER)
-	@JoinColumn(name = "owner_id")
+	@JoinColumn(name = "owner_id", nullable = false, updatable = false)
 	@OrderBy("name")
+	@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 	private List<Pet> pets = new ArrayList<>();
 
 	public String getAddress() {
@@ -155,6 +169,16 @@ public class Owner extends Person {
 			.toString();
 	}
 
+	/**
+	 * Announces the saved aggregate, published by Spring Data on
+	 * {@link OwnerRepository#save(Owner)}.
+	 * @return the {@link OwnerSaved} event
+	 */
+	@DomainEvents
+	Collection<Object> domainEvents() {
+		return List.of(new OwnerSaved(this));
+	}
+
 	/**
 	 * Adds the given {@link Visit} to the {@link Pet} with the given identifier.
 	 * @param petId the identifier of the {@link Pet}, must not be {@literal null}.
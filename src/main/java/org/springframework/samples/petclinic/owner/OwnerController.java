@@ -15,14 +15,20 @@
  */
 package org.springframework.samples.petclinic.owner;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
-import org.springframework.data.domain.Page;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.samples.petclinic.system.VersionedResources;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.util.StringUtils;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.WebDataBinder;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -32,9 +38,11 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import io.github.wimdeblauwe.htmx.spring.boot.mvc.HtmxResponse;
 import io.github.wimdeblauwe.htmx.spring.boot.mvc.HxRequest;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 
 /**
@@ -45,7 +53,7 @@ import jakarta.validation.Valid;
  * @author Alexandre Grison
  */
 @Controller
-class OwnerController {
+class OwnerController implements VersionedResources {
 
 	private static final String VIEWS_OWNER_CREATE_OR_UPDATE_FORM = "owners/createOrUpdateOwnerForm";
 
@@ -53,15 +61,54 @@ class OwnerController {
 
 	private static final String FRAGMENTS_OWNERS_FIND_FORM = "fragments/owners :: find-form";
 
+	private static final int PAGE_SIZE = 5;
+
+	private static final int LOOKUP_SIZE = 10;
+
+	private static final int SEARCH_SIZE = 20;
+
+	private static final int LATEST_VISITS = 3;
+
 	private final OwnerRepository owners;
 
-	public OwnerController(OwnerRepository clinicService) {
+	private final OwnerNameIndex nameIndex;
+
+	private final OwnerSearchIndex searchIndex;
+
+	private final OwnerReadService reads;
+
+	private final OwnerVersions versions;
+
+	public OwnerController(OwnerRepository clinicService, OwnerNameIndex nameIndex, OwnerSearchIndex searchIndex,
+			OwnerReadService reads, OwnerVersions versions) {
 		this.owners = clinicService;
+		this.nameIndex = nameIndex;
+		this.searchIndex = searchIndex;
+		this.reads = reads;
+		this.versions = versions;
+	}
+
+	/**
+	 * The owner details are versioned by the generation of the owner, so unchanged
+	 * details are answered with 304 before the owner is loaded.
+	 */
+	@Override
+	public String version(String pattern, Map<String, String> uriVariables, HttpServletRequest request) {
+		if (!"/owners/{ownerId}".equals(pattern)) {
+			return null;
+		}
+		try {
+			Integer ownerId = Integer.valueOf(uriVariables.get("ownerId"));
+			return ownerId + "." + this.versions.generation(ownerId);
+		}
+		catch (NumberFormatException ex) {
+			return null;
+		}
 	}
 
 	@InitBinder
 	public void setAllowedFields(WebDataBinder dataBinder) {
-		dataBinder.setDisallowedFields("id");
+		dataBinder.setDisallowedFields("id", "version");
 	}
 
 	@ModelAttribute("owner")
@@ -117,6 +164,50 @@ class OwnerController {
 		return FRAGMENTS_OWNERS_FIND_FORM;
 	}
 
+	@GetMapping("/owners/lookup")
+	public String lookupOwners(@RequestParam(defaultValue = "") String lastName, RedirectAttributes attributes) {
+		// without htmx there is nothing to complete, fall back to a regular search
+		attributes.addAttribute("cursor", "");
+		attributes.addAttribute("lastName", lastName);
+		return "redirect:/owners";
+	}
+
+	/**
+	 * Typeahead of the find owners form, answered from the {@link OwnerNameIndex} without
+	 * a database round trip.
+	 */
+	@HxRequest
+	@GetMapping("/owners/lookup")
+	public String htmxLookupOwners(@RequestParam(defaultValue = "") String lastName, Model model) {
+		List<OwnerName> matchingOwners = lastName.isEmpty() ? List.of()
+				: this.nameIndex.findByLastNamePrefix(lastName, LOOKUP_SIZE);
+		model.addAttribute("matchingOwners", matchingOwners);
+		return "fragments/owners :: lookup";
+	}
+
+	@GetMapping("/owners/search")
+	public String searchOwners(@RequestParam(defaultValue = "") String q, Model model) {
+		return handleSearchOwners(q, model, "owners/searchOwners");
+	}
+
+	@HxRequest
+	@GetMapping("/owners/search")
+	public String htmxSearchOwners(@RequestParam(defaultValue = "") String q, Model model) {
+		return handleSearchOwners(q, model, "fragments/owners :: search-results");
+	}
+
+	/**
+	 * Full-text search across owners, pets and visits, answered from the
+	 * {@link OwnerSearchIndex}.
+	 */
+	protected String handleSearchOwners(String query, Model model, String view) {
+		model.addAttribute("query", query);
+		if (StringUtils.hasText(query)) {
+			model.addAttribute("hits", this.searchIndex.search(query, SEARCH_SIZE));
+		}
+		return view;
+	}
+
 	@GetMapping("/owners")
 	public String ownersList(@RequestParam(defaultValue = "1") int page, Owner owner, BindingResult result,
 			Model model) {
@@ -132,6 +223,19 @@ class OwnerController {
 		return new HtmxResponse().addTemplate(view);
 	}
 
+	@GetMapping(value = "/owners", params = "cursor")
+	public String ownersScroll(@RequestParam String cursor, Owner owner, BindingResult result, Model model) {
+		return processScrollForm(cursor, owner, result, model, "owners/findOwners", "owners/ownersList");
+	}
+
+	@HxRequest
+	@GetMapping(value = "/owners", params = "cursor")
+	public HtmxResponse htmxOwnersScroll(@RequestParam String cursor, Owner owner, BindingResult result, Model model) {
+		String view = processScrollForm(cursor, owner, result, model, FRAGMENTS_OWNERS_FIND_FORM,
+				"fragments/owners :: list");
+		return new HtmxResponse().addTemplate(view);
+	}
+
 	public String processFindForm(@RequestParam(defaultValue = "1") int page, Owner owner, BindingResult result,
 			Model model, String emptyView, String listView) {
 		// allow parameterless GET request for /owners to return all records
@@ -140,37 +244,94 @@ class OwnerController {
 		}
 
 		// find owners by last name
-		Page<Owner> ownersResults = findPaginatedForOwnersLastName(page, owner.getLastName());
+		Slice<OwnerSummary> ownersResults = findPaginatedForOwnersLastName(page, owner.getLastName());
 		if (ownersResults.isEmpty()) {
 			// no owners found
 			result.rejectValue("lastName", "notFound", "not found");
 			return emptyView;
 		}
 
-		if (ownersResults.getTotalElements() == 1) {
+		if (page == 1 && !ownersResults.hasNext() && ownersResults.getNumberOfElements() == 1) {
 			// 1 owner found
-			owner = ownersResults.iterator().next();
-			return "redirect:/owners/" + owner.getId();
+			return "redirect:/owners/" + ownersResults.iterator().next().id();
 		}
 
 		// multiple owners found
 		return addPaginationModel(owner.getLastName(), page, model, ownersResults, listView);
 	}
 
-	private String addPaginationModel(String lastName, int page, Model model, Page<Owner> paginated, String listView) {
-		model.addAttribute("listOwners", paginated);
-		List<Owner> listOwners = paginated.getContent();
+	private String addPaginationModel(String lastName, int page, Model model, Slice<OwnerSummary> paginated,
+			String listView) {
+		List<OwnerSummary> listOwners = paginated.getContent();
+		// the total only feeds the page links, so it is taken from the per prefix count
+		// cache rather than from a count query on every search; it may lag behind
+		// concurrent inserts, hence the page count is never below the known pages
+		long totalItems = this.owners.countByLastName(lastName);
+		int knownPages = paginated.hasNext() ? page + 1 : page;
 		model.addAttribute("currentPage", page);
-		model.addAttribute("totalPages", paginated.getTotalPages());
-		model.addAttribute("totalItems", paginated.getTotalElements());
+		model.addAttribute("totalPages", Math.max(knownPages, (int) Math.ceil((double) totalItems / PAGE_SIZE)));
+		model.addAttribute("totalItems", totalItems);
 		model.addAttribute("listOwners", listOwners);
 		return listView;
 	}
 
-	private Page<Owner> findPaginatedForOwnersLastName(int page, String lastname) {
-		int pageSize = 5;
-		Pageable pageable = PageRequest.of(page - 1, pageSize);
-		return owners.findByLastName(lastname, pageable);
+	private Slice<OwnerSummary> findPaginatedForOwnersLastName(int page, String lastname) {
+		Pageable pageable = PageRequest.of(page - 1, PAGE_SIZE);
+		return owners.findSliceByLastName(lastname, pageable);
+	}
+
+	/**
+	 * Keyset paginated variant of {@link #processFindForm}: instead of a page number the
+	 * request carries a {@link OwnerCursor} pointing at the owner the page starts after
+	 * (or ends before), so the database never has to skip over preceding rows.
+	 */
+	protected String processScrollForm(String cursor, Owner owner, BindingResult result, Model model, String emptyView,
+			String listView) {
+		// allow parameterless GET request for /owners to return all records
+		if (owner.getLastName() == null) {
+			owner.setLastName(""); // empty string signifies broadest possible search
+		}
+
+		OwnerCursor position = OwnerCursor.parse(cursor);
+		List<OwnerSummary> ownersResults = findScrolledForOwnersLastName(position, owner.getLastName());
+		boolean hasMore = ownersResults.size() > PAGE_SIZE;
+		if (hasMore) {
+			ownersResults = ownersResults.subList(0, PAGE_SIZE);
+		}
+		if (!position.forward()) {
+			ownersResults = new ArrayList<>(ownersResults);
+			Collections.reverse(ownersResults);
+		}
+
+		if (ownersResults.isEmpty()) {
+			// no owners found
+			result.rejectValue("lastName", "notFound", "not found");
+			return emptyView;
+		}
+
+		if (position.isFirst() && ownersResults.size() == 1) {
+			// 1 owner found
+			return "redirect:/owners/" + ownersResults.get(0).id();
+		}
+
+		// multiple owners found
+		OwnerSummary first = ownersResults.get(0);
+		OwnerSummary last = ownersResults.get(ownersResults.size() - 1);
+		boolean hasPrevious = position.forward() ? !position.isFirst() : hasMore;
+		boolean hasNext = position.forward() ? hasMore : true;
+		model.addAttribute("listOwners", ownersResults);
+		model.addAttribute("previousCursor", hasPrevious ? OwnerCursor.before(first).toString() : null);
+		model.addAttribute("nextCursor", hasNext ? OwnerCursor.after(last).toString() : null);
+		return listView;
+	}
+
+	private List<OwnerSummary> findScrolledForOwnersLastName(OwnerCursor position, String lastname) {
+		// fetch one more owner than displayed to find out whether there is another page
+		Limit limit = Limit.of(PAGE_SIZE + 1);
+		if (position.forward()) {
+			return owners.findByLastNameAfter(lastname, position.lastName(), position.id(), limit);
+		}
+		return owners.findByLastNameBefore(lastname, position.lastName(), position.id(), limit);
 	}
 
 	@GetMapping("/owners/{ownerId}/edit")
@@ -191,30 +352,49 @@ class OwnerController {
 	}
 
 	@PostMapping("/owners/{ownerId}/edit")
-	public String processUpdateOwnerForm(@Valid Owner owner, BindingResult result,
-			@PathVariable("ownerId") int ownerId) {
-		return handleProcessUpdateOwnerForm(owner, result, ownerId, VIEWS_OWNER_CREATE_OR_UPDATE_FORM);
+	public String processUpdateOwnerForm(@Valid Owner owner, BindingResult result, @PathVariable("ownerId") int ownerId,
+			@RequestParam(required = false) Integer version) {
+		return handleProcessUpdateOwnerForm(owner, result, ownerId, version, VIEWS_OWNER_CREATE_OR_UPDATE_FORM);
 	}
 
 	@HxRequest
 	@PostMapping("/owners/{ownerId}/edit")
 	public String htmxProcessUpdateOwnerForm(@Valid Owner owner, BindingResult result,
-			@PathVariable("ownerId") int ownerId) {
-		return handleProcessUpdateOwnerForm(owner, result, ownerId, FRAGMENTS_OWNERS_EDIT);
+			@PathVariable("ownerId") int ownerId, @RequestParam(required = false) Integer version) {
+		return handleProcessUpdateOwnerForm(owner, result, ownerId, version, FRAGMENTS_OWNERS_EDIT);
 	}
 
-	protected String handleProcessUpdateOwnerForm(Owner owner, BindingResult result, int ownerId, String view) {
+	/**
+	 * Update the owner, unless it was changed by someone else since the form was
+	 * rendered: the form carries the version the owner had back then. A conflict is
+	 * reported as a global error of the form, which keeps the entered values and carries
+	 * the version just read, so submitting it again overwrites the other change.
+	 */
+	protected String handleProcessUpdateOwnerForm(Owner owner, BindingResult result, int ownerId, Integer version,
+			String view) {
+		if (version != null && !version.equals(owner.getVersion())) {
+			result.reject("conflict", "changed by someone else after the form was opened");
+		}
 		if (result.hasErrors()) {
 			return view;
 		}
 
 		owner.setId(ownerId);
-		this.owners.save(owner);
+		try {
+			this.owners.save(owner);
+		}
+		catch (OptimisticLockingFailureException ex) {
+			result.reject("conflict", "changed by someone else after the form was opened");
+			return view;
+		}
 		return "redirect:/owners/{ownerId}";
 	}
 
 	/**
-	 * Custom handler for displaying an owner.
+	 * Custom handler for displaying an owner. Only the latest visits of each pet are
+	 * shown, the older ones are loaded on demand from the visit history of the pet. The
+	 * view renders {@link OwnerDetails}, read up front, so no connection is held while it
+	 * renders.
 	 * @param ownerId the ID of the owner to display
 	 * @return a ModelMap with the model attributes for the view
 	 */
@@ -231,8 +411,7 @@ class OwnerController {
 
 	protected ModelAndView handleShowOwner(int ownerId, String view) {
 		ModelAndView mav = new ModelAndView(view);
-		Owner owner = this.owners.findById(ownerId);
-		mav.addObject(owner);
+		mav.addObject("owner", this.reads.findOwnerDetails(ownerId, LATEST_VISITS));
 		return mav;
 	}
 
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.Locale;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * Keyset position within the owners search results, which are ordered by lower-cased last
+ * name and id. A cursor is rendered into the next/previous links of the owners list as
+ * <code>n:&lt;id&gt;:&lt;lastName&gt;</code> (owners after the given one) or
+ * <code>p:&lt;id&gt;:&lt;lastName&gt;</code> (owners before the given one); an empty
+ * cursor denotes the first page.
+ */
+record OwnerCursor(boolean forward, String lastName, Integer id) {
+
+	static final OwnerCursor FIRST = new OwnerCursor(true, "", 0);
+
+	static OwnerCursor after(OwnerSummary owner) {
+		return new OwnerCursor(true, key(owner), owner.id());
+	}
+
+	static OwnerCursor before(OwnerSummary owner) {
+		return new OwnerCursor(false, key(owner), owner.id());
+	}
+
+	private static String key(OwnerSummary owner) {
+		return owner.lastName().toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * Parse a cursor as rendered by {@link #toString()}, falling back to the first page
+	 * for anything that cannot be understood.
+	 * @param cursor the cursor to parse
+	 * @return the parsed cursor
+	 */
+	static OwnerCursor parse(String cursor) {
+		if (!StringUtils.hasLength(cursor)) {
+			return FIRST;
+		}
+		String[] parts = cursor.split(":", 3);
+		if (parts.length != 3 || !(parts[0].equals("n") || parts[0].equals("p"))) {
+			return FIRST;
+		}
+		try {
+			return new OwnerCursor(parts[0].equals("n"), parts[2], Integer.valueOf(parts[1]));
+		}
+		catch (NumberFormatException ex) {
+			return FIRST;
+		}
+	}
+
+	boolean isFirst() {
+		return FIRST.equals(this);
+	}
+
+	@Override
+	public String toString() {
+		return (this.forward ? "n:" : "p:") + this.id + ":" + this.lastName;
+	}
+
+}
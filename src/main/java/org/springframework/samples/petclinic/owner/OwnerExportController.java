@@ -0,0 +1,63 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Export of all owners, see {@link OwnerExporter}. The owners are written straight to the
+ * response as they are read, in the format named by the extension of the path.
+ */
+@Controller
+class OwnerExportController {
+
+	private final OwnerExporter exporter;
+
+	public OwnerExportController(OwnerExporter exporter) {
+		this.exporter = exporter;
+	}
+
+	@GetMapping("/owners/export.csv")
+	public void exportCsv(HttpServletResponse response) throws IOException {
+		handleExport(response, OwnerImportFormat.CSV, "owners.csv");
+	}
+
+	@GetMapping("/owners/export.ndjson")
+	public void exportNdjson(HttpServletResponse response) throws IOException {
+		handleExport(response, OwnerImportFormat.NDJSON, "owners.ndjson");
+	}
+
+	private void handleExport(HttpServletResponse response, OwnerImportFormat format, String filename)
+			throws IOException {
+		response.setContentType(format.getMediaType());
+		response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename);
+		Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8));
+		this.exporter.exportOwners(writer, format);
+		writer.flush();
+	}
+
+}
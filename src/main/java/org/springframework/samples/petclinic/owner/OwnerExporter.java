@@ -0,0 +1,88 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.springframework.samples.petclinic.owner.OwnerImportFormat.OwnerRow;
+import org.springframework.samples.petclinic.owner.OwnerImportFormat.PetRow;
+import org.springframework.samples.petclinic.owner.OwnerImportFormat.VisitRow;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Export of all owners with their pets and visits, in any {@link OwnerImportFormat} and
+ * so ready to be imported again. The owners are read as flat {@link OwnerExportRow rows}
+ * from a forward-only cursor, no entity is loaded, and every owner is written as soon as
+ * its last row was read. Neither the rows nor the output are held in memory, however many
+ * owners and visits there are.
+ */
+@Component
+public class OwnerExporter {
+
+	private final OwnerRepository owners;
+
+	private final ObjectMapper objectMapper;
+
+	public OwnerExporter(OwnerRepository owners, ObjectMapper objectMapper) {
+		this.owners = owners;
+		this.objectMapper = objectMapper;
+	}
+
+	/**
+	 * Export all owners to the given writer.
+	 * @param writer the output, it is neither flushed nor closed
+	 * @param format the format to write
+	 * @return the number of exported owners
+	 * @throws IOException if the output could not be written
+	 */
+	@Transactional(readOnly = true)
+	public int exportOwners(Writer writer, OwnerImportFormat format) throws IOException {
+		int count = 0;
+		try (Stream<OwnerExportRow> rows = this.owners.streamAll()) {
+			Iterator<OwnerExportRow> iterator = rows.iterator();
+			OwnerExportRow row = iterator.hasNext() ? iterator.next() : null;
+			while (row != null) {
+				OwnerExportRow owner = row;
+				List<PetRow> pets = new ArrayList<>();
+				Integer petId = null;
+				do {
+					if (row.petId() != null && !row.petId().equals(petId)) {
+						petId = row.petId();
+						pets.add(new PetRow(row.petName(), row.birthDate(), row.type(), new ArrayList<>()));
+					}
+					if (row.visitId() != null) {
+						pets.get(pets.size() - 1).visits().add(new VisitRow(row.visitDate(), row.description()));
+					}
+					row = iterator.hasNext() ? iterator.next() : null;
+				}
+				while (row != null && row.ownerId().equals(owner.ownerId()));
+				format.write(new OwnerRow(owner.firstName(), owner.lastName(), owner.address(), owner.city(),
+						owner.telephone(), pets), writer, this.objectMapper);
+				count++;
+			}
+		}
+		return count;
+	}
+
+}
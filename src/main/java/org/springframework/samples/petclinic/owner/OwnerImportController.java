@@ -0,0 +1,56 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+/**
+ * Bulk import of owners, see {@link OwnerImporter}. The request body is streamed into the
+ * importer as it arrives, UTF-8 encoded, and the {@link OwnerImporter.Report report} is
+ * returned as JSON: <pre class="code">
+ * curl --data-binary @owners.csv -H 'Content-Type: text/csv' localhost:8080/owners/import
+ * </pre>
+ */
+@Controller
+class OwnerImportController {
+
+	private final OwnerImporter importer;
+
+	public OwnerImportController(OwnerImporter importer) {
+		this.importer = importer;
+	}
+
+	@PostMapping(path = "/owners/import", consumes = "text/csv")
+	public @ResponseBody OwnerImporter.Report importCsv(InputStream body) {
+		return handleImport(body, OwnerImportFormat.CSV);
+	}
+
+	@PostMapping(path = "/owners/import", consumes = "application/x-ndjson")
+	public @ResponseBody OwnerImporter.Report importNdjson(InputStream body) {
+		return handleImport(body, OwnerImportFormat.NDJSON);
+	}
+
+	private OwnerImporter.Report handleImport(InputStream body, OwnerImportFormat format) {
+		return this.importer.importOwners(new InputStreamReader(body, StandardCharsets.UTF_8), format);
+	}
+
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.springframework.util.StringUtils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The formats the {@link OwnerImporter} reads and the {@link OwnerExporter} writes. Both
+ * are read line by line and yield one {@link Entry} per owner, and written one owner at a
+ * time, so no more than one owner with its pets and visits is held in memory, however
+ * large the data.
+ */
+public enum OwnerImportFormat {
+
+	/**
+	 * Comma separated rows, each starting with its kind. A <code>pet</code> row belongs
+	 * to the <code>owner</code> row before it, a <code>visit</code> row to the
+	 * <code>pet</code> row before it. Fields may be enclosed in double quotes, quoted
+	 * fields may span lines, read back with <code>\n</code> line breaks. Blank lines and
+	 * lines starting with <code>#</code> are skipped: <pre class="code">
+	 * owner,George,Franklin,110 W. Liberty St.,Madison,6085551023
+	 * pet,Leo,2010-09-07,cat
+	 * visit,2013-01-01,rabies shot
+	 * </pre>
+	 */
+	CSV("text/csv") {
+
+		@Override
+		Iterator<Entry> read(BufferedReader reader, ObjectMapper objectMapper) {
+			return new CsvEntries(reader);
+		}
+
+		@Override
+		void write(OwnerRow owner, Writer writer, ObjectMapper objectMapper) throws IOException {
+			writeRow(writer, "owner", owner.firstName(), owner.lastName(), owner.address(), owner.city(),
+					owner.telephone());
+			for (PetRow pet : owner.pets()) {
+				writeRow(writer, "pet", pet.name(), pet.birthDate(), pet.type());
+				for (VisitRow visit : pet.visits()) {
+					writeRow(writer, "visit", visit.date(), visit.description());
+				}
+			}
+		}
+
+		private void writeRow(Writer writer, Object... fields) throws IOException {
+			for (int i = 0; i < fields.length; i++) {
+				if (i > 0) {
+					writer.write(',');
+				}
+				String field = (fields[i] != null) ? fields[i].toString() : "";
+				if (field.indexOf(',') >= 0 || field.indexOf('"') >= 0 || field.indexOf('\n') >= 0
+						|| field.indexOf('\r') >= 0) {
+					field = '"' + field.replace("\"", "\"\"") + '"';
+				}
+				writer.write(field);
+			}
+			writer.write('\n');
+		}
+
+	},
+
+	/**
+	 * One JSON owner per line, with nested pets and visits: <pre class="code">
+	 * {"firstName":"George","lastName":"Franklin","address":"110 W. Liberty St.","city":"Madison",
+	 *  "telephone":"6085551023","pets":[{"name":"Leo","birthDate":"2010-09-07","type":"cat",
+	 *  "visits":[{"date":"2013-01-01","description":"rabies shot"}]}]}
+	 * </pre>
+	 */
+	NDJSON("application/x-ndjson") {
+
+		@Override
+		Iterator<Entry> read(BufferedReader reader, ObjectMapper objectMapper) {
+			return new Entries(reader) {
+
+				@Override
+				Entry readEntry() {
+					String line = nextLine();
+					if (line == null) {
+						return null;
+					}
+					try {
+						return new Entry(lineNumber(), objectMapper.readValue(line, OwnerRow.class), null);
+					}
+					catch (JsonProcessingException ex) {
+						return new Entry(lineNumber(), null, ex.getOriginalMessage());
+					}
+				}
+
+			};
+		}
+
+		@Override
+		void write(OwnerRow owner, Writer writer, ObjectMapper objectMapper) throws IOException {
+			writer.write(objectMapper.writeValueAsString(owner));
+			writer.write('\n');
+		}
+
+	};
+
+	private final String mediaType;
+
+	OwnerImportFormat(String mediaType) {
+		this.mediaType = mediaType;
+	}
+
+	public String getMediaType() {
+		return this.mediaType;
+	}
+
+	abstract Iterator<Entry> read(BufferedReader reader, ObjectMapper objectMapper);
+
+	abstract void write(OwnerRow owner, Writer writer, ObjectMapper objectMapper) throws IOException;
+
+	/**
+	 * An owner read from the input, or why it could not be read.
+	 *
+	 * @param line the number of the line the owner starts at, or of the line that could
+	 * not be read
+	 * @param owner the owner, {@literal null} if it could not be read
+	 * @param error why the owner could not be read, {@literal null} if it could
+	 */
+	record Entry(int line, OwnerRow owner, String error) {
+
+	}
+
+	record OwnerRow(String firstName, String lastName, String address, String city, String telephone,
+			List<PetRow> pets) {
+
+		OwnerRow {
+			pets = (pets != null) ? pets : List.of();
+		}
+
+	}
+
+	record PetRow(String name, LocalDate birthDate, String type, List<VisitRow> visits) {
+
+		PetRow {
+			visits = (visits != null) ? visits : List.of();
+		}
+
+	}
+
+	record VisitRow(LocalDate date, String description) {
+
+	}
+
+	private abstract static class Entries implements Iterator<Entry> {
+
+		private final BufferedReader reader;
+
+		private int lineNumber;
+
+		private Entry next;
+
+		Entries(BufferedReader reader) {
+			this.reader = reader;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (this.next == null) {
+				this.next = readEntry();
+			}
+			return this.next != null;
+		}
+
+		@Override
+		public Entry next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Entry entry = this.next;
+			this.next = null;
+			return entry;
+		}
+
+		abstract Entry readEntry();
+
+		/**
+		 * Return the next line that is neither blank nor a comment.
+		 * @return the line, or {@literal null} at the end of the input
+		 */
+		String nextLine() {
+			String line;
+			do {
+				line = readLine();
+			}
+			while (line != null && (line.isBlank() || line.startsWith("#")));
+			return line;
+		}
+
+		/**
+		 * Return the next line, whatever it holds.
+		 * @return the line, or {@literal null} at the end of the input
+		 */
+		String readLine() {
+			try {
+				String line = this.reader.readLine();
+				this.lineNumber++;
+				return line;
+			}
+			catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}
+
+		int lineNumber() {
+			return this.lineNumber;
+		}
+
+	}
+
+	private static class CsvEntries extends Entries {
+
+		private String[] lookahead;
+
+		private int lookaheadLine;
+
+		private int rowLine;
+
+		CsvEntries(BufferedReader reader) {
+			super(reader);
+		}
+
+		@Override
+		Entry readEntry() {
+			String[] owner = (this.lookahead != null) ? this.lookahead : nextRow();
+			int line = (this.lookahead != null) ? this.lookaheadLine : this.rowLine;
+			this.lookahead = null;
+			if (owner == null) {
+				return null;
+			}
+			Entry error = (owner[0].equals("owner") && owner.length == 6) ? null
+					: new Entry(line, null, "expected an owner row with 6 fields");
+			List<PetRow> pets = new ArrayList<>();
+			String[] row;
+			while ((row = nextRow()) != null) {
+				if (row[0].equals("owner")) {
+					this.lookahead = row;
+					this.lookaheadLine = this.rowLine;
+					break;
+				}
+				if (error == null) {
+					error = add(pets, row);
+				}
+			}
+			return (error != null) ? error
+					: new Entry(line, new OwnerRow(owner[1], owner[2], owner[3], owner[4], owner[5], pets), null);
+		}
+
+		private Entry add(List<PetRow> pets, String[] row) {
+			try {
+				if (row[0].equals("pet") && row.length == 4) {
+					pets.add(new PetRow(row[1], date(row[2]), row[3], new ArrayList<>()));
+					return null;
+				}
+				if (row[0].equals("visit") && row.length == 3 && !pets.isEmpty()) {
+					pets.get(pets.size() - 1).visits().add(new VisitRow(date(row[1]), row[2]));
+					return null;
+				}
+				return new Entry(this.rowLine, null, "expected a pet row with 4 fields or a visit row with 3 fields");
+			}
+			catch (DateTimeParseException ex) {
+				return new Entry(this.rowLine, null, ex.getMessage());
+			}
+		}
+
+		private String[] nextRow() {
+			String line = nextLine();
+			if (line == null) {
+				return null;
+			}
+			this.rowLine = lineNumber();
+			// a quoted field with line breaks continues on the next lines
+			StringBuilder row = new StringBuilder(line);
+			while (unclosedQuote(row) && (line = readLine()) != null) {
+				row.append('\n').append(line);
+			}
+			return split(row.toString());
+		}
+
+		private static boolean unclosedQuote(CharSequence row) {
+			// escaped quotes come in pairs, so an odd count leaves a field open
+			return row.chars().filter(c -> c == '"').count() % 2 != 0;
+		}
+
+		private static LocalDate date(String text) {
+			return StringUtils.hasText(text) ? LocalDate.parse(text.strip()) : null;
+		}
+
+		static String[] split(String line) {
+			List<String> fields = new ArrayList<>();
+			StringBuilder field = new StringBuilder();
+			boolean quoted = false;
+			for (int i = 0; i < line.length(); i++) {
+				char c = line.charAt(i);
+				if (quoted && c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					field.append(c);
+					i++;
+				}
+				else if (c == '"') {
+					quoted = !quoted;
+				}
+				else if (c == ',' && !quoted) {
+					fields.add(field.toString());
+					field.setLength(0);
+				}
+				else {
+					field.append(c);
+				}
+			}
+			fields.add(field.toString());
+			return fields.toArray(String[]::new);
+		}
+
+	}
+
+}
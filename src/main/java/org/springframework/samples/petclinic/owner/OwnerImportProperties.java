@@ -0,0 +1,32 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Sizing of the {@link OwnerImporter}, bound from <code>petclinic.import.*</code>.
+ *
+ * @param batchSize the number of rows sent to the database in one JDBC batch, which is
+ * also how many rows are held in the persistence context before it is flushed and cleared
+ * @param commitSize the number of rows imported in one transaction, a failing import
+ * keeps the transactions committed before
+ */
+@ConfigurationProperties("petclinic.import")
+public record OwnerImportProperties(@DefaultValue("50") int batchSize, @DefaultValue("1000") int commitSize) {
+
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.io.BufferedReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.samples.petclinic.owner.OwnerImportFormat.Entry;
+import org.springframework.samples.petclinic.owner.OwnerImportFormat.OwnerRow;
+import org.springframework.samples.petclinic.owner.OwnerImportFormat.PetRow;
+import org.springframework.samples.petclinic.owner.OwnerImportFormat.VisitRow;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.Errors;
+import org.springframework.validation.ValidationUtils;
+import org.springframework.validation.Validator;
+import org.springframework.validation.beanvalidation.SpringValidatorAdapter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.EntityManager;
+
+/**
+ * Bulk import of owners with their pets and visits. The input is streamed, one owner at a
+ * time, and imported in transactions of <code>commitSize</code> rows; every
+ * <code>batchSize</code> rows the persistence context is flushed, sending the inserts as
+ * JDBC batches, and cleared, so memory use does not grow with the input. Ids come from
+ * the pooled sequences, so no insert has to be executed on its own to learn its id.
+ * <p>
+ * Owners are validated like the owner and pet forms do, by Bean Validation and the
+ * {@link PetValidator}. An owner that fails to read or validate is rejected along with
+ * its pets and visits, the import goes on with the next owner. Imported owners are added
+ * to the {@link OwnerNameIndex} and the {@link OwnerSearchIndex} and get a new generation
+ * in the {@link OwnerVersions} once their transaction committed, but are not added to the
+ * second-level cache.
+ */
+@Component
+@EnableConfigurationProperties(OwnerImportProperties.class)
+public class OwnerImporter {
+
+	private static final int MAX_ERRORS = 100;
+
+	private final EntityManager entityManager;
+
+	private final TransactionTemplate transactions;
+
+	private final PetTypeRegistry petTypes;
+
+	private final OwnerNameIndex nameIndex;
+
+	private final OwnerSearchIndex searchIndex;
+
+	private final OwnerVersions versions;
+
+	private final CacheManager cacheManager;
+
+	private final ObjectMapper objectMapper;
+
+	private final Validator beanValidator;
+
+	private final Validator petValidator = new PetValidator();
+
+	private final OwnerImportProperties properties;
+
+	public OwnerImporter(EntityManager entityManager, PlatformTransactionManager transactionManager,
+			PetTypeRegistry petTypes, OwnerNameIndex nameIndex, OwnerSearchIndex searchIndex, OwnerVersions versions,
+			CacheManager cacheManager, ObjectMapper objectMapper, jakarta.validation.Validator validator,
+			OwnerImportProperties properties) {
+		this.entityManager = entityManager;
+		this.transactions = new TransactionTemplate(transactionManager);
+		this.petTypes = petTypes;
+		this.nameIndex = nameIndex;
+		this.searchIndex = searchIndex;
+		this.versions = versions;
+		this.cacheManager = cacheManager;
+		this.objectMapper = objectMapper;
+		this.beanValidator = new SpringValidatorAdapter(validator);
+		this.properties = properties;
+	}
+
+	/**
+	 * Import the owners read from the given source.
+	 * @param source the input, it is read to the end but not closed
+	 * @param format the format of the input
+	 * @return the report of the import
+	 */
+	public Report importOwners(Reader source, OwnerImportFormat format) {
+		long start = System.nanoTime();
+		Iterator<Entry> entries = format.read(new BufferedReader(source), this.objectMapper);
+		Progress progress = new Progress();
+		while (entries.hasNext()) {
+			List<Owner> imported = this.transactions.execute(status -> importChunk(entries, progress));
+			for (Owner owner : imported) {
+				this.nameIndex.put(new OwnerName(owner.getId(), owner.getFirstName(), owner.getLastName()));
+				this.searchIndex.index(owner);
+				this.versions.changed(owner.getId());
+			}
+		}
+		Cache counts = this.cacheManager.getCache("ownerCounts");
+		if (counts != null) {
+			counts.clear();
+		}
+		return progress.report(System.nanoTime() - start);
+	}
+
+	private List<Owner> importChunk(Iterator<Entry> entries, Progress progress) {
+		Session session = this.entityManager.unwrap(Session.class);
+		session.setJdbcBatchSize(this.properties.batchSize());
+		session.setCacheMode(CacheMode.IGNORE);
+		List<Owner> imported = new ArrayList<>();
+		int rows = 0;
+		int unflushed = 0;
+		while (rows < this.properties.commitSize() && entries.hasNext()) {
+			Entry entry = entries.next();
+			if (entry.error() != null) {
+				progress.reject(entry.line(), List.of(entry.error()));
+				continue;
+			}
+			Owner owner = toOwner(entry.owner());
+			List<String> errors = validate(owner, entry.owner());
+			if (!errors.isEmpty()) {
+				progress.reject(entry.line(), errors);
+				continue;
+			}
+			this.entityManager.persist(owner);
+			imported.add(owner);
+			int count = progress.imported(owner);
+			rows += count;
+			unflushed += count;
+			if (unflushed >= this.properties.batchSize()) {
+				this.entityManager.flush();
+				this.entityManager.clear();
+				unflushed = 0;
+			}
+		}
+		return imported;
+	}
+
+	private Owner toOwner(OwnerRow row) {
+		Owner owner = new Owner();
+		owner.setFirstName(row.firstName());
+		owner.setLastName(row.lastName());
+		owner.setAddress(row.address());
+		owner.setCity(row.city());
+		owner.setTelephone(row.telephone());
+		for (PetRow petRow : row.pets()) {
+			Pet pet = new Pet();
+			pet.setName(petRow.name());
+			pet.setBirthDate(petRow.birthDate());
+			pet.setType((petRow.type() != null) ? this.petTypes.findByName(petRow.type()) : null);
+			for (VisitRow visitRow : petRow.visits()) {
+				Visit visit = new Visit();
+				if (visitRow.date() != null) {
+					visit.setDate(visitRow.date());
+				}
+				visit.setDescription(visitRow.description());
+				pet.addVisit(visit);
+			}
+			owner.addPet(pet);
+		}
+		return owner;
+	}
+
+	private List<String> validate(Owner owner, OwnerRow row) {
+		List<String> errors = new ArrayList<>();
+		validate(owner, "owner", errors, this.beanValidator);
+		for (int i = 0; i < owner.getPets().size(); i++) {
+			Pet pet = owner.getPets().get(i);
+			if (pet.getType() == null && row.pets().get(i).type() != null) {
+				errors.add("pet " + pet.getName() + ": unknown type " + row.pets().get(i).type());
+			}
+			validate(pet, "pet " + pet.getName(), errors, this.petValidator, this.beanValidator);
+			for (Visit visit : pet.getVisits()) {
+				validate(visit, "visit of " + pet.getName(), errors, this.beanValidator);
+			}
+		}
+		return errors;
+	}
+
+	private static void validate(Object target, String name, List<String> messages, Validator... validators) {
+		Errors errors = new BeanPropertyBindingResult(target, name);
+		for (Validator validator : validators) {
+			ValidationUtils.invokeValidator(validator, target, errors);
+		}
+		errors.getFieldErrors()
+			.forEach(error -> messages.add(name + ": " + error.getField() + " " + error.getDefaultMessage()));
+	}
+
+	/**
+	 * The outcome of an import.
+	 *
+	 * @param owners the number of imported owners
+	 * @param pets the number of imported pets
+	 * @param visits the number of imported visits
+	 * @param rejected the number of owners rejected along with their pets and visits
+	 * @param errors why owners were rejected, at most the first 100 errors
+	 * @param millis how long the import took, in milliseconds
+	 * @param rowsPerSecond the imported owners, pets and visits per second
+	 */
+	public record Report(int owners, int pets, int visits, int rejected, List<String> errors, long millis,
+			long rowsPerSecond) {
+
+	}
+
+	private static class Progress {
+
+		private int owners;
+
+		private int pets;
+
+		private int visits;
+
+		private int rejected;
+
+		private final List<String> errors = new ArrayList<>();
+
+		int imported(Owner owner) {
+			int visits = owner.getPets().stream().mapToInt(pet -> pet.getVisits().size()).sum();
+			this.owners++;
+			this.pets += owner.getPets().size();
+			this.visits += visits;
+			return 1 + owner.getPets().size() + visits;
+		}
+
+		void reject(int line, List<String> errors) {
+			this.rejected++;
+			errors.stream()
+				.limit(MAX_ERRORS - this.errors.size())
+				.forEach(error -> this.errors.add("line " + line + ": " + error));
+		}
+
+		Report report(long nanos) {
+			long rows = this.owners + this.pets + this.visits;
+			return new Report(this.owners, this.pets, this.visits, this.rejected, List.copyOf(this.errors),
+					TimeUnit.NANOSECONDS.toMillis(nanos), rows * TimeUnit.SECONDS.toNanos(1) / Math.max(nanos, 1));
+		}
+
+	}
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * In-memory index of the {@link Owner} last names, sorted case-insensitively, backing the
+ * owner typeahead. Lookups only walk a {@link ConcurrentSkipListMap} and never touch the
+ * database; the index is loaded once the application is ready and then kept up to date,
+ * like the {@link OwnerSearchIndex}, from the {@link OwnerSaved} events
+ * {@link OwnerRepository#save(Owner)} publishes, applied once their transaction
+ * committed. The {@link OwnerImporter} adds the owners it imports itself.
+ */
+@Component
+public class OwnerNameIndex {
+
+	private static final Comparator<Key> ORDER = Comparator.comparing(Key::lastName).thenComparingInt(Key::id);
+
+	private final ConcurrentSkipListMap<Key, OwnerName> names = new ConcurrentSkipListMap<>(ORDER);
+
+	private final Map<Integer, Key> keys = new ConcurrentHashMap<>();
+
+	private final OwnerRepository owners;
+
+	public OwnerNameIndex(OwnerRepository owners) {
+		this.owners = owners;
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public synchronized void load() {
+		this.names.clear();
+		this.keys.clear();
+		this.owners.findNames().forEach(this::put);
+	}
+
+	/**
+	 * Retrieve the owners whose last name <i>starts</i> with the given prefix, ignoring
+	 * case, ordered by last name and id.
+	 * @param prefix Value to search for
+	 * @param limit maximum number of owners to return
+	 * @return the matching {@link OwnerName owner names} (or an empty Collection if none
+	 * found)
+	 */
+	public List<OwnerName> findByLastNamePrefix(String prefix, int limit) {
+		String folded = fold(prefix);
+		List<OwnerName> result = new ArrayList<>();
+		for (Map.Entry<Key, OwnerName> entry : this.names.tailMap(new Key(folded, Integer.MIN_VALUE)).entrySet()) {
+			if (result.size() == limit || !entry.getKey().lastName().startsWith(folded)) {
+				break;
+			}
+			result.add(entry.getValue());
+		}
+		return result;
+	}
+
+	/**
+	 * Apply a saved owner once its transaction committed, so a rolled back save never
+	 * shows up in the typeahead.
+	 * @param event the event of the saved owner
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onOwnerSaved(OwnerSaved event) {
+		Owner owner = event.owner();
+		put(new OwnerName(owner.getId(), owner.getFirstName(), owner.getLastName()));
+	}
+
+	public synchronized void put(OwnerName name) {
+		Key key = new Key(fold(name.lastName()), name.id());
+		Key previous = this.keys.put(name.id(), key);
+		// a renamed owner moves within the index, insert first so it is never missing
+		this.names.put(key, name);
+		if (previous != null && !previous.equals(key)) {
+			this.names.remove(previous);
+		}
+	}
+
+	public synchronized void remove(Integer id) {
+		Key previous = this.keys.remove(id);
+		if (previous != null) {
+			this.names.remove(previous);
+		}
+	}
+
+	public int size() {
+		return this.names.size();
+	}
+
+	private static String fold(String lastName) {
+		return lastName == null ? "" : lastName.toLowerCase(Locale.ROOT);
+	}
+
+	private record Key(String lastName, int id) {
+	}
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Reads what the owner pages render, every method within a single read-only transaction
+ * returning fully initialized view models. Open-in-view is disabled, so the connection of
+ * the transaction is back in the pool before the view is rendered, rather than being held
+ * while Thymeleaf writes the page; a template reaching for anything not loaded fails
+ * instead of querying lazily.
+ */
+@Service
+public class OwnerReadService {
+
+	private final OwnerRepository owners;
+
+	private final VisitRepository visits;
+
+	public OwnerReadService(OwnerRepository owners, VisitRepository visits) {
+		this.owners = owners;
+		this.visits = visits;
+	}
+
+	/**
+	 * Read an {@link Owner} with its pets and the latest visits of each pet.
+	 * @param ownerId the id of the owner
+	 * @param latestVisits the maximum number of visits per pet
+	 * @return the {@link OwnerDetails}, or {@literal null} if the owner was not found
+	 */
+	@Transactional(readOnly = true)
+	public OwnerDetails findOwnerDetails(int ownerId, int latestVisits) {
+		Owner owner = this.owners.findById(ownerId);
+		if (owner == null) {
+			return null;
+		}
+		Map<Integer, Slice<VisitSummary>> visits = this.visits.findLatestByPet(ownerId, latestVisits);
+		Slice<VisitSummary> none = new SliceImpl<>(List.of(), Pageable.ofSize(latestVisits), false);
+		List<PetDetails> pets = owner.getPets()
+			.stream()
+			.map(pet -> PetDetails.of(pet, visits.getOrDefault(pet.getId(), none)))
+			.toList();
+		return new OwnerDetails(owner.getId(), owner.getFirstName(), owner.getLastName(), owner.getAddress(),
+				owner.getCity(), owner.getTelephone(), pets);
+	}
+
+	/**
+	 * Read a {@link Pet} of an already loaded {@link Owner} with all its visits, oldest
+	 * first. Only the visits are queried, the owner comes with its pets and their types.
+	 * @param owner the owner, as returned by {@link OwnerRepository#findById(Integer)}
+	 * @param petId the id of the pet
+	 * @return the {@link PetDetails}, or {@literal null} if the owner has no such pet
+	 */
+	@Transactional(readOnly = true)
+	public PetDetails findPetDetails(Owner owner, int petId) {
+		Pet pet = (owner != null) ? owner.getPet(petId) : null;
+		if (pet == null) {
+			return null;
+		}
+		return PetDetails.of(pet, new SliceImpl<>(this.visits.findByPet(owner.getId(), petId)));
+	}
+
+}
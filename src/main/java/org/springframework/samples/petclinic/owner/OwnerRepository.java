@@ -16,14 +16,23 @@
 package org.springframework.samples.petclinic.owner;
 
 import java.util.List;
+import java.util.stream.Stream;
 
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.Repository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
+import jakarta.persistence.QueryHint;
+
 /**
  * Repository class for <code>Owner</code> domain objects All method names are compliant
  * with Spring Data naming conventions so this interface can easily be extended for Spring
@@ -47,22 +56,129 @@ public interface OwnerRepository extends Repository<Owner, Integer> {
 
 	/**
 	 * Retrieve {@link Owner}s from the data store by last name, returning all owners
-	 * whose last name <i>starts</i> with the given name.
+	 * whose last name <i>starts</i> with the given name, ignoring case. All last name
+	 * searches go through the indexed, lower-cased <code>last_name_key</code> column.
 	 * @param lastName Value to search for
 	 * @return a Collection of matching {@link Owner}s (or an empty Collection if none
 	 * found)
 	 */
 
-	@Query("SELECT DISTINCT owner FROM Owner owner left join  owner.pets WHERE owner.lastName LIKE :lastName% ")
+	@Query("SELECT DISTINCT owner FROM Owner owner left join  owner.pets WHERE owner.lastNameKey LIKE :#{#lastName.toLowerCase(T(java.util.Locale).ROOT)}%")
 	@Transactional(readOnly = true)
 	Page<Owner> findByLastName(@Param("lastName") String lastName, Pageable pageable);
 
 	/**
-	 * Retrieve an {@link Owner} from the data store by id.
+	 * Retrieve {@link OwnerSummary owner summaries} from the data store by last name,
+	 * returning all owners whose last name <i>starts</i> with the given name. Unlike
+	 * {@link #findByLastName(String, Pageable)} no count query is issued, the returned
+	 * {@link Slice} only knows whether there is a next slice. Use
+	 * {@link #countByLastName(String)} for the (cached) total.
+	 * @param lastName Value to search for
+	 * @return a Slice of matching {@link OwnerSummary owner summaries} (or an empty Slice
+	 * if none found)
+	 */
+	@Query("""
+			SELECT new org.springframework.samples.petclinic.owner.OwnerSummary(owner.id, owner.firstName,
+			owner.lastName, owner.address, owner.city, owner.telephone,
+			listagg(pet.name, ', ') WITHIN GROUP (ORDER BY pet.name))
+			FROM Owner owner left join owner.pets pet WHERE owner.lastNameKey LIKE :#{#lastName.toLowerCase(T(java.util.Locale).ROOT)}%
+			GROUP BY owner.id, owner.firstName, owner.lastName, owner.lastNameKey, owner.address, owner.city, owner.telephone
+			ORDER BY owner.lastNameKey, owner.id""")
+	@Transactional(readOnly = true)
+	Slice<OwnerSummary> findSliceByLastName(@Param("lastName") String lastName, Pageable pageable);
+
+	/**
+	 * Count the {@link Owner}s whose last name <i>starts</i> with the given name. Counts
+	 * are cached per prefix until the next {@link #save(Owner)}, and are refreshed in the
+	 * background as configured for the <code>ownerCounts</code> cache.
+	 * @param lastName Value to search for
+	 * @return the number of matching {@link Owner}s
+	 */
+	@Cacheable("ownerCounts")
+	default long countByLastName(String lastName) {
+		return countOwnersByLastName(lastName);
+	}
+
+	/**
+	 * Count the {@link Owner}s whose last name <i>starts</i> with the given name, always
+	 * querying the data store. Prefer the cached {@link #countByLastName(String)}.
+	 * @param lastName Value to search for
+	 * @return the number of matching {@link Owner}s
+	 */
+	@Query("SELECT COUNT(owner) FROM Owner owner WHERE owner.lastNameKey LIKE :#{#lastName.toLowerCase(T(java.util.Locale).ROOT)}%")
+	@Transactional(readOnly = true)
+	long countOwnersByLastName(@Param("lastName") String lastName);
+
+	/**
+	 * Retrieve {@link OwnerSummary owner summaries} from the data store by last name,
+	 * returning the owners whose last name <i>starts</i> with the given name and that are
+	 * ordered after the given keyset position. Owners are ordered by lower-cased last
+	 * name and id, so the position is the lower-cased last name and id of the last owner
+	 * already seen. Unlike {@link #findByLastName(String, Pageable)} no preceding rows
+	 * are skipped, so deep pages cost the same as the first one.
+	 * @param lastName Value to search for
+	 * @param afterLastName lower-cased last name of the last {@link Owner} already seen
+	 * @param afterId id of the last {@link Owner} already seen
+	 * @param limit maximum number of owners to return
+	 * @return a Collection of matching {@link OwnerSummary owner summaries} (or an empty
+	 * Collection if none found)
+	 */
+	@Query("""
+			SELECT new org.springframework.samples.petclinic.owner.OwnerSummary(owner.id, owner.firstName,
+			owner.lastName, owner.address, owner.city, owner.telephone,
+			listagg(pet.name, ', ') WITHIN GROUP (ORDER BY pet.name))
+			FROM Owner owner left join owner.pets pet WHERE owner.lastNameKey LIKE :#{#lastName.toLowerCase(T(java.util.Locale).ROOT)}%
+			AND (owner.lastNameKey > :afterLastName OR (owner.lastNameKey = :afterLastName AND owner.id > :afterId))
+			GROUP BY owner.id, owner.firstName, owner.lastName, owner.lastNameKey, owner.address, owner.city, owner.telephone
+			ORDER BY owner.lastNameKey, owner.id""")
+	@Transactional(readOnly = true)
+	List<OwnerSummary> findByLastNameAfter(@Param("lastName") String lastName,
+			@Param("afterLastName") String afterLastName, @Param("afterId") Integer afterId, Limit limit);
+
+	/**
+	 * Retrieve {@link OwnerSummary owner summaries} from the data store by last name,
+	 * returning the owners whose last name <i>starts</i> with the given name and that are
+	 * ordered before the given keyset position. This is the backward counterpart of
+	 * {@link #findByLastNameAfter(String, String, Integer, Limit)}, the owners are
+	 * returned in <i>descending</i> last name and id order.
+	 * @param lastName Value to search for
+	 * @param beforeLastName lower-cased last name of the first {@link Owner} already seen
+	 * @param beforeId id of the first {@link Owner} already seen
+	 * @param limit maximum number of owners to return
+	 * @return a Collection of matching {@link OwnerSummary owner summaries} (or an empty
+	 * Collection if none found)
+	 */
+	@Query("""
+			SELECT new org.springframework.samples.petclinic.owner.OwnerSummary(owner.id, owner.firstName,
+			owner.lastName, owner.address, owner.city, owner.telephone,
+			listagg(pet.name, ', ') WITHIN GROUP (ORDER BY pet.name))
+			FROM Owner owner left join owner.pets pet WHERE owner.lastNameKey LIKE :#{#lastName.toLowerCase(T(java.util.Locale).ROOT)}%
+			AND (owner.lastNameKey < :beforeLastName OR (owner.lastNameKey = :beforeLastName AND owner.id < :beforeId))
+			GROUP BY owner.id, owner.firstName, owner.lastName, owner.lastNameKey, owner.address, owner.city, owner.telephone
+			ORDER BY owner.lastNameKey DESC, owner.id DESC""")
+	@Transactional(readOnly = true)
+	List<OwnerSummary> findByLastNameBefore(@Param("lastName") String lastName,
+			@Param("beforeLastName") String beforeLastName, @Param("beforeId") Integer beforeId, Limit limit);
+
+	/**
+	 * Retrieve the names of all {@link Owner}s from the data store.
+	 * @return the {@link OwnerName owner names}
+	 */
+	@Query("SELECT new org.springframework.samples.petclinic.owner.OwnerName(owner.id, owner.firstName, owner.lastName) FROM Owner owner")
+	@Transactional(readOnly = true)
+	List<OwnerName> findNames();
+
+	/**
+	 * Retrieve an {@link Owner} from the data store by id. The pets and their types are
+	 * fetched along with the owner with one statement, the visits of the pets are only
+	 * loaded on first access, all of them by one subselect. The query result is cached,
+	 * so repeated views of an owner are served from the second-level cache until any
+	 * owner, pet, type or visit is saved.
 	 * @param id the id to search for
 	 * @return the {@link Owner} if found
 	 */
-	@Query("SELECT owner FROM Owner owner left join fetch owner.pets WHERE owner.id =:id")
+	@Query("SELECT owner FROM Owner owner left join fetch owner.pets pet left join fetch pet.type WHERE owner.id =:id")
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
 	@Transactional(readOnly = true)
 	Owner findById(@Param("id") Integer id);
 
@@ -70,8 +186,27 @@ public interface OwnerRepository extends Repository<Owner, Integer> {
 	 * Save an {@link Owner} to the data store, either inserting or updating it.
 	 * @param owner the {@link Owner} to save
 	 */
+	@CacheEvict(cacheNames = "ownerCounts", allEntries = true)
 	void save(Owner owner);
 
+	/**
+	 * Stream all {@link Owner}s with their pets and visits from the data store as flat
+	 * {@link OwnerExportRow rows}, ordered by owner, pet and visit date. The rows are
+	 * fetched from a forward-only cursor as they are consumed (on MySQL only with the
+	 * <code>useCursorFetch</code> the mysql profile sets), and as they are no entities
+	 * the persistence context stays empty. Must be called within a transaction, and the
+	 * stream must be closed.
+	 * @return the rows of all owners
+	 */
+	@Query("""
+			SELECT new org.springframework.samples.petclinic.owner.OwnerExportRow(owner.id, owner.firstName,
+			owner.lastName, owner.address, owner.city, owner.telephone, pet.id, pet.name, pet.birthDate, type.name,
+			visit.id, visit.date, visit.description)
+			FROM Owner owner left join owner.pets pet left join pet.type type left join pet.visits visit
+			ORDER BY owner.id, pet.id, visit.date, visit.id""")
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+	Stream<OwnerExportRow> streamAll();
+
 	/**
 	 * Returns all the owners from data store
 	 **/
@@ -0,0 +1,369 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import org.hibernate.Hibernate;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Embedded full-text index over the {@link Owner} aggregates: the name, address, city and
+ * telephone of the owner, the names and types of the pets and the descriptions of their
+ * visits. Every owner is one document; the inverted index maps each term to its postings,
+ * the weighted term frequency per owner, and results are ranked by tf-idf.
+ * <p>
+ * The index is built once the application is ready, from the flat rows of all owners
+ * streamed one owner at a time, and then updated incrementally from the
+ * {@link OwnerSaved} events {@link OwnerRepository#save(Owner)} publishes, like the
+ * {@link OwnerNameIndex}. The document of an owner is built before the index is locked,
+ * an update then swaps it in under the write lock, so searches never see an owner half
+ * re-indexed, only the owners indexed so far while the index is being built.
+ */
+@Component
+public class OwnerSearchIndex {
+
+	private static final int NAME_WEIGHT = 3;
+
+	private static final int PET_WEIGHT = 2;
+
+	private static final int DEFAULT_WEIGHT = 1;
+
+	private final ConcurrentSkipListMap<String, Map<Integer, Integer>> postings = new ConcurrentSkipListMap<>();
+
+	private final Map<Integer, Document> documents = new ConcurrentHashMap<>();
+
+	// not a monitor, so a virtual thread waiting for an update does not pin its carrier
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final OwnerRepository owners;
+
+	public OwnerSearchIndex(OwnerRepository owners) {
+		this.owners = owners;
+	}
+
+	/**
+	 * (Re-)build the index from all owners. The rows of the owners, their pets and visits
+	 * are streamed within one read-only transaction and indexed owner by owner, so no
+	 * more than one owner is held at a time.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	@Transactional(readOnly = true)
+	public void load() {
+		update(() -> {
+			this.postings.clear();
+			this.documents.clear();
+		});
+		try (Stream<OwnerExportRow> rows = this.owners.streamAll()) {
+			Document.Builder builder = null;
+			for (OwnerExportRow row : (Iterable<OwnerExportRow>) rows::iterator) {
+				if (builder == null || !builder.id().equals(row.ownerId())) {
+					if (builder != null) {
+						index(builder.build());
+					}
+					builder = new Document.Builder(row.ownerId(), row.firstName(), row.lastName(), row.address(),
+							row.city(), row.telephone());
+				}
+				builder.row(row);
+			}
+			if (builder != null) {
+				index(builder.build());
+			}
+		}
+	}
+
+	/**
+	 * Re-index a saved owner. Visits are loaded lazily, so an owner that was saved
+	 * without its visits at hand is read again to get them.
+	 * @param event the event of the saved owner
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	@Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
+	public void onOwnerSaved(OwnerSaved event) {
+		Owner owner = event.owner();
+		boolean visitsLoaded = owner.getPets().stream().allMatch(pet -> Hibernate.isInitialized(pet.getVisits()));
+		index(visitsLoaded ? owner : this.owners.findById(owner.getId()));
+	}
+
+	/**
+	 * Index a visit added without saving its owner.
+	 * @param event the event of the added visit
+	 */
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onVisitAdded(VisitAdded event) {
+		update(() -> {
+			Document document = this.documents.get(event.ownerId());
+			if (document != null) {
+				replace(document.withVisit(event.visit().getDescription()));
+			}
+		});
+	}
+
+	/**
+	 * (Re-)index the given {@link Owner}, replacing any previous version of it.
+	 * @param owner the owner to index
+	 */
+	public void index(Owner owner) {
+		// reading the visits may query the database, which must not happen under the lock
+		index(Document.of(owner));
+	}
+
+	private void index(Document document) {
+		update(() -> replace(document));
+	}
+
+	private void replace(Document document) {
+		Document previous = this.documents.put(document.id(), document);
+		if (previous != null) {
+			previous.terms().keySet().forEach(term -> removePosting(term, previous.id()));
+		}
+		document.terms()
+			.forEach((term, frequency) -> this.postings.computeIfAbsent(term, key -> new ConcurrentHashMap<>())
+				.put(document.id(), frequency));
+	}
+
+	private void removePosting(String term, Integer id) {
+		this.postings.computeIfPresent(term, (key, postings) -> {
+			postings.remove(id);
+			return postings.isEmpty() ? null : postings;
+		});
+	}
+
+	/**
+	 * Search the owners matching any term of the given query, best matches first. The
+	 * last term of the query also matches as a prefix, so results can be shown while the
+	 * query is typed.
+	 * @param query the free text query
+	 * @param limit maximum number of results to return
+	 * @return the ranked {@link Hit hits} (or an empty Collection if none found)
+	 */
+	public List<Hit> search(String query, int limit) {
+		List<String> terms = tokenize(query);
+		if (terms.isEmpty()) {
+			return List.of();
+		}
+		this.lock.readLock().lock();
+		try {
+			return search(terms, limit);
+		}
+		finally {
+			this.lock.readLock().unlock();
+		}
+	}
+
+	private List<Hit> search(List<String> terms, int limit) {
+		Map<String, Map<Integer, Integer>> matches = new HashMap<>();
+		for (String term : terms.subList(0, terms.size() - 1)) {
+			Map<Integer, Integer> postings = this.postings.get(term);
+			if (postings != null) {
+				matches.put(term, postings);
+			}
+		}
+		String last = terms.get(terms.size() - 1);
+		matches.putAll(this.postings.subMap(last, last + Character.MAX_VALUE));
+
+		int total = Math.max(this.documents.size(), 1);
+		Map<Integer, Double> scores = new HashMap<>();
+		matches.forEach((term, postings) -> {
+			double idf = Math.log(1 + (double) total / Math.max(postings.size(), 1));
+			postings.forEach((id, frequency) -> scores.merge(id, frequency * idf, Double::sum));
+		});
+
+		List<Hit> hits = new ArrayList<>();
+		scores.forEach((id, score) -> {
+			Document document = this.documents.get(id);
+			if (document != null) {
+				hits.add(new Hit(document, score));
+			}
+		});
+		hits.sort(Comparator.comparingDouble(Hit::score)
+			.reversed()
+			.thenComparing(hit -> hit.document().lastName())
+			.thenComparing(hit -> hit.document().id()));
+		return hits.size() > limit ? hits.subList(0, limit) : hits;
+	}
+
+	public int size() {
+		return this.documents.size();
+	}
+
+	private void update(Runnable update) {
+		this.lock.writeLock().lock();
+		try {
+			update.run();
+		}
+		finally {
+			this.lock.writeLock().unlock();
+		}
+	}
+
+	static List<String> tokenize(String text) {
+		if (text == null) {
+			return List.of();
+		}
+		return Arrays.stream(text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+			.filter(token -> !token.isEmpty())
+			.toList();
+	}
+
+	/**
+	 * A ranked search result.
+	 *
+	 * @param document the matching owner
+	 * @param score the tf-idf score of the owner for the query
+	 */
+	public record Hit(Document document, double score) {
+
+	}
+
+	/**
+	 * The indexed representation of an {@link Owner}, holding what the search results
+	 * display along with the weighted frequencies of its terms.
+	 *
+	 * @param id the id of the owner
+	 * @param firstName the first name of the owner
+	 * @param lastName the last name of the owner
+	 * @param city the city of the owner
+	 * @param telephone the telephone of the owner
+	 * @param pets the names of the pets
+	 * @param visits the descriptions of the visits of all pets
+	 * @param terms the weighted frequency per term
+	 */
+	public record Document(Integer id, String firstName, String lastName, String city, String telephone,
+			List<String> pets, List<String> visits, Map<String, Integer> terms) {
+
+		static Document of(Owner owner) {
+			Builder builder = new Builder(owner.getId(), owner.getFirstName(), owner.getLastName(), owner.getAddress(),
+					owner.getCity(), owner.getTelephone());
+			for (Pet pet : owner.getPets()) {
+				builder.pet(pet.getName(), (pet.getType() != null) ? pet.getType().getName() : null);
+				for (Visit visit : pet.getVisits()) {
+					builder.visit(visit.getDescription());
+				}
+			}
+			return builder.build();
+		}
+
+		Document withVisit(String description) {
+			Map<String, Integer> terms = new HashMap<>(this.terms);
+			add(terms, description, DEFAULT_WEIGHT);
+			Set<String> visits = new LinkedHashSet<>(this.visits);
+			visits.add(description);
+			return new Document(this.id, this.firstName, this.lastName, this.city, this.telephone, this.pets,
+					List.copyOf(visits), Map.copyOf(terms));
+		}
+
+		private static void add(Map<String, Integer> terms, String text, int weight) {
+			tokenize(text).forEach(term -> terms.merge(term, weight, Integer::sum));
+		}
+
+		/**
+		 * Collects the pets and visits of one owner into its {@link Document}.
+		 */
+		static final class Builder {
+
+			private final Integer id;
+
+			private final String firstName;
+
+			private final String lastName;
+
+			private final String city;
+
+			private final String telephone;
+
+			private final Map<String, Integer> terms = new HashMap<>();
+
+			private final List<String> pets = new ArrayList<>();
+
+			private final Set<String> visits = new LinkedHashSet<>();
+
+			private Integer lastPetId;
+
+			Builder(Integer id, String firstName, String lastName, String address, String city, String telephone) {
+				this.id = id;
+				this.firstName = firstName;
+				this.lastName = lastName;
+				this.city = city;
+				this.telephone = telephone;
+				add(this.terms, firstName, NAME_WEIGHT);
+				add(this.terms, lastName, NAME_WEIGHT);
+				add(this.terms, address, DEFAULT_WEIGHT);
+				add(this.terms, city, DEFAULT_WEIGHT);
+				add(this.terms, telephone, DEFAULT_WEIGHT);
+			}
+
+			Integer id() {
+				return this.id;
+			}
+
+			void pet(String name, String type) {
+				this.pets.add(name);
+				add(this.terms, name, PET_WEIGHT);
+				add(this.terms, type, DEFAULT_WEIGHT);
+			}
+
+			void visit(String description) {
+				this.visits.add(description);
+				add(this.terms, description, DEFAULT_WEIGHT);
+			}
+
+			/**
+			 * Add a row of {@link OwnerRepository#streamAll()}, the rows of a pet follow
+			 * each other.
+			 */
+			void row(OwnerExportRow row) {
+				if (row.petId() != null && !row.petId().equals(this.lastPetId)) {
+					pet(row.petName(), row.type());
+					this.lastPetId = row.petId();
+				}
+				if (row.visitId() != null) {
+					visit(row.description());
+				}
+			}
+
+			Document build() {
+				// ordered by name, as the pets of an owner are
+				List<String> pets = this.pets.stream()
+					.sorted(Comparator.nullsFirst(Comparator.naturalOrder()))
+					.toList();
+				return new Document(this.id, this.firstName, this.lastName, this.city, this.telephone, pets,
+						List.copyOf(this.visits), Map.copyOf(this.terms));
+			}
+
+		}
+
+	}
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Generation counters of the {@link Owner} aggregates, used as the version of the owner
+ * details. Every owner gets a new generation once a transaction saving it, or adding a
+ * visit to one of its pets, committed; owners never changed since startup share
+ * generation zero. Generations come from one counter, so they never repeat.
+ * <p>
+ * The counters live in this JVM only, which assumes a single instance of the application:
+ * writes made through another instance, or by SQL bypassing the application, are not seen
+ * and the owner details keep answering with their previous version until the next
+ * restart. Code saving owners without publishing {@link OwnerSaved}, like the
+ * {@link OwnerImporter}, calls {@link #changed(Integer)} itself.
+ */
+@Component
+public class OwnerVersions {
+
+	private final AtomicLong generations = new AtomicLong();
+
+	private final Map<Integer, Long> owners = new ConcurrentHashMap<>();
+
+	/**
+	 * Return the current generation of the given owner.
+	 * @param ownerId the id of the owner
+	 * @return the generation
+	 */
+	public long generation(Integer ownerId) {
+		return this.owners.getOrDefault(ownerId, 0L);
+	}
+
+	/**
+	 * Move the given owner to a new generation.
+	 * @param ownerId the id of the changed owner
+	 */
+	public void changed(Integer ownerId) {
+		this.owners.put(ownerId, this.generations.incrementAndGet());
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onOwnerSaved(OwnerSaved event) {
+		changed(event.owner().getId());
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onVisitAdded(VisitAdded event) {
+		changed(event.ownerId());
+	}
+
+}
@@ -17,6 +17,9 @@ package org.springframework.samples.petclinic.owner;
 
 import java.util.Collection;
 
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.ModelMap;
 import org.springframework.util.StringUtils;
@@ -28,6 +31,7 @@ import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 
 import io.github.wimdeblauwe.htmx.spring.boot.mvc.HxRequest;
 import jakarta.validation.Valid;
@@ -46,35 +50,46 @@ class PetController {
 
 	private static final String FRAGMENTS_PETS_EDIT = "fragments/pets :: edit";
 
+	private static final int VISITS_PAGE_SIZE = 10;
+
 	private final OwnerRepository owners;
 
-	public PetController(OwnerRepository owners) {
+	private final PetTypeRegistry petTypes;
+
+	private final VisitRepository visits;
+
+	public PetController(OwnerRepository owners, PetTypeRegistry petTypes, VisitRepository visits) {
 		this.owners = owners;
+		this.petTypes = petTypes;
+		this.visits = visits;
 	}
 
 	@ModelAttribute("types")
 	public Collection<PetType> populatePetTypes() {
-		return this.owners.findPetTypes();
-	}
-
-	@ModelAttribute("owner")
-	public Owner findOwner(@PathVariable("ownerId") int ownerId) {
-		return this.owners.findById(ownerId);
-	}
-
-	@ModelAttribute("pet")
-	public Pet findPet(@PathVariable("ownerId") int ownerId,
-			@PathVariable(name = "petId", required = false) Integer petId) {
-		return petId == null ? new Pet() : this.owners.findById(ownerId).getPet(petId);
+		return this.petTypes.findAll();
+	}
+
+	/**
+	 * Load the owner once and take the pet from it. Without an open session the form has
+	 * to be bound to the very pet that is saved along with its owner, a pet of a second
+	 * copy of the owner would not be merged.
+	 */
+	@ModelAttribute
+	public void populateOwnerAndPet(@PathVariable("ownerId") int ownerId,
+			@PathVariable(name = "petId", required = false) Integer petId, ModelMap model) {
+		Owner owner = this.owners.findById(ownerId);
+		model.put("owner", owner);
+		model.put("pet", (petId == null) ? new Pet() : owner.getPet(petId));
 	}
 
 	@InitBinder("owner")
 	public void initOwnerBinder(WebDataBinder dataBinder) {
-		dataBinder.setDisallowedFields("id");
+		dataBinder.setDisallowedFields("id", "version");
 	}
 
 	@InitBinder("pet")
 	public void initPetBinder(WebDataBinder dataBinder) {
+		dataBinder.setDisallowedFields("version");
 		dataBinder.setValidator(new PetValidator());
 	}
 
@@ -119,7 +134,14 @@ class PetController {
 			return view;
 		}
 
-		this.owners.save(owner);
+		try {
+			this.owners.save(owner);
+		}
+		catch (OptimisticLockingFailureException ex) {
+			result.reject("conflict", "changed by someone else after the form was opened");
+			model.put("pet", pet);
+			return view;
+		}
 		return "redirect:/owners/{ownerId}";
 	}
 
@@ -143,26 +165,72 @@ class PetController {
 	}
 
 	@PostMapping("/pets/{petId}/edit")
-	public String processUpdateForm(@Valid Pet pet, BindingResult result, Owner owner, ModelMap model) {
-		return handleProcessUpdateForm(pet, result, owner, model, VIEWS_PETS_CREATE_OR_UPDATE_FORM);
+	public String processUpdateForm(@Valid Pet pet, BindingResult result, Owner owner,
+			@RequestParam(required = false) Integer version, ModelMap model) {
+		return handleProcessUpdateForm(pet, result, owner, version, model, VIEWS_PETS_CREATE_OR_UPDATE_FORM);
 	}
 
 	@HxRequest
 	@PostMapping("/pets/{petId}/edit")
-	public String htmxProcessUpdateForm(@Valid Pet pet, BindingResult result, Owner owner, ModelMap model) {
-		return handleProcessUpdateForm(pet, result, owner, model, FRAGMENTS_PETS_EDIT);
-	}
-
-	protected String handleProcessUpdateForm(@Valid Pet pet, BindingResult result, Owner owner, ModelMap model,
-			String view) {
+	public String htmxProcessUpdateForm(@Valid Pet pet, BindingResult result, Owner owner,
+			@RequestParam(required = false) Integer version, ModelMap model) {
+		return handleProcessUpdateForm(pet, result, owner, version, model, FRAGMENTS_PETS_EDIT);
+	}
+
+	/**
+	 * Update the pet, unless it was changed by someone else since the form was rendered,
+	 * see {@link OwnerController#handleProcessUpdateOwnerForm}.
+	 */
+	protected String handleProcessUpdateForm(@Valid Pet pet, BindingResult result, Owner owner, Integer version,
+			ModelMap model, String view) {
+		if (version != null && !version.equals(pet.getVersion())) {
+			result.reject("conflict", "changed by someone else after the form was opened");
+		}
 		if (result.hasErrors()) {
 			model.put("pet", pet);
 			return view;
 		}
 
 		owner.addPet(pet);
-		this.owners.save(owner);
+		try {
+			this.owners.save(owner);
+		}
+		catch (OptimisticLockingFailureException ex) {
+			result.reject("conflict", "changed by someone else after the form was opened");
+			model.put("pet", pet);
+			return view;
+		}
 		return "redirect:/owners/{ownerId}";
 	}
 
+	/**
+	 * Custom handler for the visit history of a pet, newest visits first. The history is
+	 * paged without counting the visits, htmx requests get just the rows of the page so
+	 * the next page can be appended once the end of the list is revealed.
+	 * @param ownerId the ID of the owner
+	 * @param petId the ID of the pet
+	 * @param page the 1-based page to display
+	 * @return the view of the visit history
+	 */
+	@GetMapping("/pets/{petId}/visits")
+	public String showVisitHistory(@PathVariable("ownerId") int ownerId, @PathVariable("petId") int petId,
+			@RequestParam(defaultValue = "1") int page, ModelMap model) {
+		return handleShowVisitHistory(ownerId, petId, page, model, "pets/visitHistory");
+	}
+
+	@HxRequest
+	@GetMapping("/pets/{petId}/visits")
+	public String htmxShowVisitHistory(@PathVariable("ownerId") int ownerId, @PathVariable("petId") int petId,
+			@RequestParam(defaultValue = "1") int page, ModelMap model) {
+		return handleShowVisitHistory(ownerId, petId, page, model, "fragments/pets :: visit-history-page");
+	}
+
+	protected String handleShowVisitHistory(int ownerId, int petId, int page, ModelMap model, String view) {
+		Slice<Visit> visits = this.visits.findHistory(ownerId, petId,
+				PageRequest.of(Math.max(page, 1) - 1, VISITS_PAGE_SIZE));
+		model.put("visits", visits);
+		model.put("currentPage", visits.getNumber() + 1);
+		return view;
+	}
+
 }
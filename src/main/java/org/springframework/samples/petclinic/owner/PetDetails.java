@@ -0,0 +1,42 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.time.LocalDate;
+
+import org.springframework.data.domain.Slice;
+
+/**
+ * Read-only view of a {@link Pet} along with the visits a page shows of it, see
+ * {@link OwnerDetails}.
+ *
+ * @param id the id of the pet
+ * @param version the version of the pet, carried by the forms adding a visit
+ * @param name the name of the pet
+ * @param birthDate the birth date of the pet
+ * @param type the name of the type of the pet
+ * @param visits the shown visits of the pet, the {@link Slice} knows whether more visits
+ * follow
+ */
+public record PetDetails(Integer id, Integer version, String name, LocalDate birthDate, String type,
+		Slice<VisitSummary> visits) {
+
+	static PetDetails of(Pet pet, Slice<VisitSummary> visits) {
+		return new PetDetails(pet.getId(), pet.getVersion(), pet.getName(), pet.getBirthDate(),
+				(pet.getType() != null) ? pet.getType().getName() : null, visits);
+	}
+
+}
@@ -15,9 +15,13 @@
  */
 package org.springframework.samples.petclinic.owner;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Immutable;
 import org.springframework.samples.petclinic.model.NamedEntity;
 
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.Table;
 
 /**
@@ -25,6 +29,9 @@ import jakarta.persistence.Table;
  */
 @Entity
 @Table(name = "types")
+@EntityListeners(PetTypeRegistry.Listener.class)
+@Immutable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
 public class PetType extends NamedEntity {
 
 }
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+
+/**
+ * Registry of the {@link PetType}s, read by every pet form. The types are held in an
+ * immutable snapshot, a sorted list plus a map by name, that is loaded on first use and
+ * swapped atomically; binding and rendering pet forms never queries the types. The
+ * {@link Listener} on {@link PetType} drops the snapshot once a transaction changing a
+ * type committed, so the next read loads the types again.
+ */
+@Component
+public class PetTypeRegistry {
+
+	private final OwnerRepository owners;
+
+	// not a monitor, so a virtual thread loading the types does not pin its carrier
+	private final Lock loadLock = new ReentrantLock();
+
+	private volatile Snapshot snapshot;
+
+	public PetTypeRegistry(OwnerRepository owners) {
+		this.owners = owners;
+	}
+
+	/**
+	 * Return all {@link PetType}s, sorted by name.
+	 * @return an immutable List of {@link PetType}s
+	 */
+	public List<PetType> findAll() {
+		return snapshot().types();
+	}
+
+	/**
+	 * Return the {@link PetType} with the given name.
+	 * @param name the name of the type
+	 * @return the {@link PetType}, or {@literal null} if none found
+	 */
+	public PetType findByName(String name) {
+		return snapshot().byName().get(name);
+	}
+
+	/**
+	 * Drop the current snapshot, the next read loads the types again. Waits for a load in
+	 * progress, which may have read the types before the change, so it cannot publish its
+	 * stale snapshot after this.
+	 */
+	public void invalidate() {
+		this.loadLock.lock();
+		try {
+			this.snapshot = null;
+		}
+		finally {
+			this.loadLock.unlock();
+		}
+	}
+
+	private Snapshot snapshot() {
+		Snapshot current = this.snapshot;
+		return current != null ? current : load();
+	}
+
+	private Snapshot load() {
+		this.loadLock.lock();
+		try {
+			Snapshot current = this.snapshot;
+			if (current == null) {
+				List<PetType> types = List.copyOf(this.owners.findPetTypes());
+				current = new Snapshot(types,
+						types.stream().collect(Collectors.toUnmodifiableMap(PetType::getName, Function.identity())));
+				this.snapshot = current;
+			}
+			return current;
+		}
+		finally {
+			this.loadLock.unlock();
+		}
+	}
+
+	private record Snapshot(List<PetType> types, Map<String, PetType> byName) {
+	}
+
+	/**
+	 * JPA entity listener of {@link PetType} invalidating the {@link PetTypeRegistry}
+	 * after the surrounding transaction committed.
+	 */
+	static class Listener {
+
+		private final ObjectProvider<PetTypeRegistry> registry;
+
+		Listener(ObjectProvider<PetTypeRegistry> registry) {
+			this.registry = registry;
+		}
+
+		// the types are immutable, they are only ever added or removed
+		@PostPersist
+		@PostRemove
+		void changed(PetType type) {
+			PetTypeRegistry registry = this.registry.getIfAvailable();
+			if (registry == null) {
+				return;
+			}
+			if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+				registry.invalidate();
+				return;
+			}
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					registry.invalidate();
+				}
+			});
+		}
+
+	}
+
+}
@@ -17,6 +17,8 @@ package org.springframework.samples.petclinic.owner;
 
 import java.time.LocalDate;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.samples.petclinic.model.BaseEntity;
 
@@ -33,6 +35,7 @@ import jakarta.validation.constraints.NotEmpty;
  */
 @Entity
 @Table(name = "visits")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Visit extends BaseEntity {
 
 	@Column(name = "visit_date")
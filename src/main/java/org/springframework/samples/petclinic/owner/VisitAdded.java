@@ -0,0 +1,29 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+/**
+ * Published when a {@link Visit} was added to a {@link Pet} through
+ * {@link VisitRepository#insert(Integer, Visit)}, which bypasses the {@link Owner}
+ * aggregate and so publishes no {@link OwnerSaved} event.
+ *
+ * @param ownerId the id of the owner of the pet
+ * @param petId the id of the visited pet
+ * @param visit the added visit
+ */
+public record VisitAdded(Integer ownerId, Integer petId, Visit visit) {
+
+}
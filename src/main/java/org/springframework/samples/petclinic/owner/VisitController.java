@@ -17,7 +17,9 @@ package org.springframework.samples.petclinic.owner;
 
 import java.util.Map;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Controller;
+import org.springframework.util.Assert;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.WebDataBinder;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -25,6 +27,7 @@ import org.springframework.web.bind.annotation.InitBinder;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 
 import io.github.wimdeblauwe.htmx.spring.boot.mvc.HxRequest;
 import jakarta.validation.Valid;
@@ -44,19 +47,30 @@ class VisitController {
 
 	private final OwnerRepository owners;
 
-	public VisitController(OwnerRepository owners) {
+	private final VisitRepository visits;
+
+	private final OwnerReadService reads;
+
+	private final ApplicationEventPublisher events;
+
+	public VisitController(OwnerRepository owners, VisitRepository visits, OwnerReadService reads,
+			ApplicationEventPublisher events) {
 		this.owners = owners;
+		this.visits = visits;
+		this.reads = reads;
+		this.events = events;
 	}
 
 	@InitBinder
 	public void setAllowedFields(WebDataBinder dataBinder) {
-		dataBinder.setDisallowedFields("id");
+		dataBinder.setDisallowedFields("id", "version");
 	}
 
 	/**
 	 * Called before each and every @RequestMapping annotated method. 2 goals: - Make sure
 	 * we always have fresh data - Since we do not use the session scope, make sure that
-	 * Pet object always has an id (Even though id is not part of the form fields)
+	 * Pet object always has an id (Even though id is not part of the form fields). The
+	 * pet is shown with its previous visits as {@link PetDetails}, read up front.
 	 * @param petId
 	 * @return Pet
 	 */
@@ -65,13 +79,10 @@ class VisitController {
 			Map<String, Object> model) {
 		Owner owner = this.owners.findById(ownerId);
 
-		Pet pet = owner.getPet(petId);
-		model.put("pet", pet);
+		model.put("pet", this.reads.findPetDetails(owner, petId));
 		model.put("owner", owner);
 
-		Visit visit = new Visit();
-		pet.addVisit(visit);
-		return visit;
+		return new Visit();
 	}
 
 	// Spring MVC calls method loadPetWithVisit(...) before initNewVisitForm is
@@ -91,25 +102,37 @@ class VisitController {
 	// called
 	@PostMapping("/owners/{ownerId}/pets/{petId}/visits/new")
 	public String processNewVisitForm(@ModelAttribute Owner owner, @PathVariable int petId, @Valid Visit visit,
-			BindingResult result) {
-		return handleProcessNewVisitForm(owner, petId, visit, result, "pets/createOrUpdateVisitForm");
+			BindingResult result, @RequestParam(required = false) Integer petVersion) {
+		return handleProcessNewVisitForm(owner, petId, visit, result, petVersion, "pets/createOrUpdateVisitForm");
 	}
 
 	@HxRequest
 	@PostMapping("/owners/{ownerId}/pets/{petId}/visits/new")
 	public String htmxProcessNewVisitForm(@ModelAttribute Owner owner, @PathVariable int petId, @Valid Visit visit,
-			BindingResult result) {
-		return handleProcessNewVisitForm(owner, petId, visit, result, FRAGMENTS_PETS_VISITS);
+			BindingResult result, @RequestParam(required = false) Integer petVersion) {
+		return handleProcessNewVisitForm(owner, petId, visit, result, petVersion, FRAGMENTS_PETS_VISITS);
 	}
 
+	/**
+	 * Add the visit, unless the pet it is for was changed by someone else since the form
+	 * was rendered: the form carries the version the pet had back then. The form is then
+	 * shown again with the current pet, submitting it again adds the visit.
+	 */
 	protected String handleProcessNewVisitForm(@ModelAttribute Owner owner, @PathVariable int petId, @Valid Visit visit,
-			BindingResult result, String errorView) {
+			BindingResult result, Integer petVersion, String errorView) {
+		Pet pet = owner.getPet(petId);
+		Assert.notNull(pet, "Invalid Pet identifier!");
+		if (petVersion != null && !petVersion.equals(pet.getVersion())) {
+			result.reject("conflict", "changed by someone else after the form was opened");
+		}
 		if (result.hasErrors()) {
 			return errorView;
 		}
 
-		owner.addVisit(petId, visit);
-		this.owners.save(owner);
+		// a single insert, the owner aggregate is neither loaded with its visits nor
+		// merged
+		this.visits.insert(petId, visit);
+		this.events.publishEvent(new VisitAdded(owner.getId(), petId, visit));
 		return "redirect:/owners/{ownerId}";
 	}
 
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.QueryHint;
+
+/**
+ * Repository class for the <code>Visit</code> history of pets. Visits are added directly
+ * and read newest first, page by page; the visits of a pet are only loaded with the
+ * {@link Pet} when the aggregate is changed as a whole.
+ */
+public interface VisitRepository extends Repository<Visit, Integer> {
+
+	/**
+	 * Insert a {@link Visit} of a {@link Pet} with a single statement, without loading or
+	 * merging the {@link Owner} aggregate. Only the cached visits and the cached queries
+	 * over visits are invalidated, cached owners and pets stay valid. Publishes no
+	 * {@link OwnerSaved} event, callers publish {@link VisitAdded} instead.
+	 * @param petId the id of the visited pet
+	 * @param visit the visit to insert, its id is not set
+	 * @return the number of inserted visits
+	 */
+	@Modifying
+	@Query(value = "INSERT INTO visits (pet_id, visit_date, description) VALUES (:petId, :#{#visit.date}, :#{#visit.description})",
+			nativeQuery = true)
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "visits"))
+	@Transactional
+	int insert(@Param("petId") Integer petId, @Param("visit") Visit visit);
+
+	/**
+	 * Retrieve a page of the visit history of a {@link Pet} of an {@link Owner}, newest
+	 * visits first. No count query is issued, the returned {@link Slice} only knows
+	 * whether older visits follow.
+	 * @param ownerId the id of the owner
+	 * @param petId the id of the pet
+	 * @param pageable the page to retrieve
+	 * @return a Slice of {@link Visit}s (or an empty Slice if none found)
+	 */
+	@Query("""
+			SELECT visit FROM Owner owner JOIN owner.pets pet JOIN pet.visits visit
+			WHERE owner.id = :ownerId AND pet.id = :petId ORDER BY visit.date DESC, visit.id DESC""")
+	@Transactional(readOnly = true)
+	Slice<Visit> findHistory(@Param("ownerId") Integer ownerId, @Param("petId") Integer petId, Pageable pageable);
+
+	/**
+	 * Retrieve all visits of a {@link Pet} of an {@link Owner}, oldest visits first.
+	 * @param ownerId the id of the owner
+	 * @param petId the id of the pet
+	 * @return the {@link VisitSummary visit summaries} of the pet (or an empty Collection
+	 * if none found)
+	 */
+	@Query("""
+			SELECT new org.springframework.samples.petclinic.owner.VisitSummary(pet.id, visit.id, visit.date,
+			visit.description)
+			FROM Owner owner JOIN owner.pets pet JOIN pet.visits visit
+			WHERE owner.id = :ownerId AND pet.id = :petId ORDER BY visit.date, visit.id""")
+	@Transactional(readOnly = true)
+	List<VisitSummary> findByPet(@Param("ownerId") Integer ownerId, @Param("petId") Integer petId);
+
+	/**
+	 * Retrieve up to the given number of latest visits of every {@link Pet} of an
+	 * {@link Owner} with a single statement, newest visits first. The result is cached
+	 * along with the owner, until any owner, pet or visit is saved.
+	 * @param ownerId the id of the owner
+	 * @param count the maximum number of visits per pet
+	 * @return the {@link VisitSummary visit summaries} ordered by pet and date
+	 */
+	@Query("""
+			SELECT new org.springframework.samples.petclinic.owner.VisitSummary(latest.petId, latest.id, latest.date,
+			latest.description)
+			FROM (SELECT pet.id AS petId, visit.id AS id, visit.date AS date, visit.description AS description,
+			row_number() OVER (PARTITION BY pet.id ORDER BY visit.date DESC, visit.id DESC) AS position
+			FROM Owner owner JOIN owner.pets pet JOIN pet.visits visit WHERE owner.id = :ownerId) latest
+			WHERE latest.position <= :count
+			ORDER BY latest.petId, latest.date DESC, latest.id DESC""")
+	@QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+	@Transactional(readOnly = true)
+	List<VisitSummary> findLatestByOwnerId(@Param("ownerId") Integer ownerId, @Param("count") int count);
+
+	/**
+	 * Retrieve the latest visits of every {@link Pet} of an {@link Owner}, grouped by
+	 * pet.
+	 * @param ownerId the id of the owner
+	 * @param count the maximum number of visits per pet
+	 * @return the latest {@link VisitSummary visit summaries} by pet id, each
+	 * {@link Slice} knows whether the pet has older visits; pets without visits are left
+	 * out
+	 */
+	default Map<Integer, Slice<VisitSummary>> findLatestByPet(Integer ownerId, int count) {
+		Map<Integer, List<VisitSummary>> visits = new LinkedHashMap<>();
+		// one more than asked for tells whether older visits follow
+		for (VisitSummary visit : findLatestByOwnerId(ownerId, count + 1)) {
+			visits.computeIfAbsent(visit.petId(), petId -> new ArrayList<>()).add(visit);
+		}
+		Map<Integer, Slice<VisitSummary>> latest = new LinkedHashMap<>();
+		visits.forEach((petId, list) -> latest.put(petId, new SliceImpl<>(list.subList(0, Math.min(count, list.size())),
+				Pageable.ofSize(count), list.size() > count)));
+		return latest;
+	}
+
+}
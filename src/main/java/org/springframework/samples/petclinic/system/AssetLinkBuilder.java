@@ -0,0 +1,44 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.util.Map;
+
+import org.thymeleaf.context.IExpressionContext;
+import org.thymeleaf.linkbuilder.AbstractLinkBuilder;
+import org.thymeleaf.linkbuilder.StandardLinkBuilder;
+
+/**
+ * Link builder of the templates that points <code>@{...}</code> links to static assets to
+ * their fingerprinted files listed in the {@link AssetManifest}, and builds all other
+ * links like the {@link StandardLinkBuilder}.
+ */
+class AssetLinkBuilder extends AbstractLinkBuilder {
+
+	private final StandardLinkBuilder links = new StandardLinkBuilder();
+
+	private final AssetManifest manifest;
+
+	AssetLinkBuilder(AssetManifest manifest) {
+		this.manifest = manifest;
+	}
+
+	@Override
+	public String buildLink(IExpressionContext context, String base, Map<String, Object> parameters) {
+		return this.links.buildLink(context, (base != null) ? this.manifest.resolve(base) : null, parameters);
+	}
+
+}
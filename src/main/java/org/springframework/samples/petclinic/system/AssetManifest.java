@@ -0,0 +1,85 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+
+/**
+ * The fingerprinted static assets, as listed in the
+ * <code>assets-manifest.properties</code> the asset pipeline of the build writes (see
+ * <code>src/build/AssetPipeline.java</code>). It maps the paths the templates link to,
+ * like <code>/webjars/htmx.org/dist/htmx.min.js</code>, to the fingerprinted files below
+ * <code>/assets/</code>, which never change and are served precompressed. Without a
+ * manifest, when the build step did not run, as when the application is started from an
+ * IDE, all paths are left as they are and webjars-locator-core resolves the version-less
+ * <code>/webjars/</code> paths.
+ */
+class AssetManifest {
+
+	static final String LOCATION = "assets-manifest.properties";
+
+	static final String PATH = "/assets/";
+
+	private final Map<String, String> assets;
+
+	AssetManifest(Map<String, String> assets) {
+		this.assets = Map.copyOf(assets);
+	}
+
+	/**
+	 * Load the manifest from the classpath, an empty one if there is none.
+	 * @return the manifest
+	 */
+	static AssetManifest load() {
+		Resource resource = new ClassPathResource(LOCATION);
+		if (!resource.exists()) {
+			return new AssetManifest(Map.of());
+		}
+		try {
+			Properties properties = PropertiesLoaderUtils.loadProperties(resource);
+			Map<String, String> assets = new HashMap<>();
+			properties.stringPropertyNames().forEach(path -> assets.put(path, properties.getProperty(path)));
+			return new AssetManifest(assets);
+		}
+		catch (IOException ex) {
+			throw new UncheckedIOException("Unable to load " + LOCATION, ex);
+		}
+	}
+
+	boolean isEmpty() {
+		return this.assets.isEmpty();
+	}
+
+	/**
+	 * Return the path of the fingerprinted file of the asset at the given context
+	 * relative path, or the path itself if it is no fingerprinted asset.
+	 * @param path the path of the asset, e.g. <code>/resources/css/petclinic.css</code>
+	 * @return the path to link to
+	 */
+	String resolve(String path) {
+		String fingerprinted = path.startsWith("/") ? this.assets.get(path.substring(1)) : null;
+		return (fingerprinted != null) ? PATH + fingerprinted : path;
+	}
+
+}
@@ -13,41 +13,150 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-
 package org.springframework.samples.petclinic.system;
 
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.metrics.cache.CacheMeterBinderProvider;
 import org.springframework.boot.autoconfigure.cache.JCacheManagerCustomizer;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.jcache.JCacheCache;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.samples.petclinic.owner.OwnerRepository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Weigher;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
 
-import javax.cache.configuration.MutableConfiguration;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import javax.cache.CacheManager;
+import javax.cache.configuration.Factory;
+import javax.cache.integration.CacheLoader;
 
 /**
- * Cache configuration intended for caches providing the JCache API. This configuration
- * creates the used cache for the application and enables statistics that become
- * accessible via JMX.
+ * Cache configuration intended for caches providing the JCache API, backed by Caffeine.
+ * This configuration creates the used caches for the application with the eviction and
+ * refresh policies of {@link CachePolicyProperties} and registers them with Micrometer,
+ * so hit ratio, load latency and evictions are reported through actuator. The Hibernate
+ * second-level cache regions are kept in the same JCache cache manager.
  */
 @Configuration(proxyBeanMethods = false)
 @EnableCaching
+@EnableConfigurationProperties(CachePolicyProperties.class)
 class CacheConfiguration {
 
 	@Bean
-	public JCacheManagerCustomizer petclinicCacheConfigurationCustomizer() {
-		return cm -> cm.createCache("vets", cacheConfiguration());
+	public JCacheManagerCustomizer petclinicCacheConfigurationCustomizer(CachePolicyProperties properties,
+			ObjectProvider<OwnerRepository> owners) {
+		// the loaders bypass the cached repository methods, they reload what the methods
+		// would have returned
+		Map<String, Function<Object, Object>> loaders = Map.of("ownerCounts",
+				key -> owners.getObject().countOwnersByLastName((String) key));
+		return cm -> {
+			Set<String> cacheNames = new LinkedHashSet<>(loaders.keySet());
+			cacheNames.addAll(FragmentCache.CACHES.values());
+			cacheNames.addAll(properties.specs().keySet());
+			for (String cacheName : cacheNames) {
+				cm.createCache(cacheName, cacheConfiguration(properties.policy(cacheName), loaders.get(cacheName)));
+			}
+		};
+	}
+
+	/**
+	 * Hand the application JCache cache manager to Hibernate, so the second-level cache
+	 * regions of the entities and collections share its provider and configuration.
+	 */
+	@Bean
+	public HibernatePropertiesCustomizer petclinicSecondLevelCacheCustomizer(CacheManager cacheManager) {
+		return properties -> properties.put("hibernate.javax.cache.cache_manager", cacheManager);
 	}
 
 	/**
-	 * Create a simple configuration that enable statistics via the JCache programmatic
-	 * configuration API.
-	 * <p>
-	 * Within the configuration object that is provided by the JCache API standard, there
-	 * is only a very limited set of configuration options. The really relevant
-	 * configuration options (like the size limit) must be set via a configuration
-	 * mechanism that is provided by the selected JCache implementation.
+	 * Bind the caches to Micrometer with the native Caffeine statistics, which unlike the
+	 * JCache statistics include load latency and eviction weight.
 	 */
-	private javax.cache.configuration.Configuration<Object, Object> cacheConfiguration() {
-		return new MutableConfiguration<>().setStatisticsEnabled(true);
+	@Bean
+	@Order(Ordered.HIGHEST_PRECEDENCE)
+	public CacheMeterBinderProvider<JCacheCache> petclinicCacheMeterBinderProvider() {
+		return (cache, tags) -> {
+			CaffeineConfiguration<?, ?> configuration = cache.getNativeCache()
+				.getConfiguration(CaffeineConfiguration.class);
+			if (!configuration.isNativeStatisticsEnabled()) {
+				return null;
+			}
+			return new CaffeineCacheMetrics<>(cache.getNativeCache().unwrap(Cache.class), cache.getName(), tags);
+		};
+	}
+
+	/**
+	 * Create the Caffeine configuration of a cache. The Caffeine specific options go
+	 * beyond the JCache standard: the size limit is a maximum weight, and entries of a
+	 * cache that has a loader are refreshed asynchronously, so readers keep getting the
+	 * stale value while one reload runs in the background instead of all of them waiting
+	 * on a miss. Native statistics are recorded for Micrometer, the JCache statistics
+	 * remain accessible via JMX.
+	 */
+	private CaffeineConfiguration<Object, Object> cacheConfiguration(CachePolicyProperties.Policy policy,
+			Function<Object, Object> loader) {
+		CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+		configuration.setStatisticsEnabled(true);
+		configuration.setNativeStatisticsEnabled(true);
+		if (policy.maximumWeight() != null) {
+			configuration.setMaximumWeight(OptionalLong.of(policy.maximumWeight()));
+			Factory<Weigher<Object, Object>> weigher = () -> CacheConfiguration::weigh;
+			configuration.setWeigherFactory(Optional.of(weigher));
+		}
+		if (policy.expireAfterWrite() != null) {
+			configuration.setExpireAfterWrite(nanos(policy.expireAfterWrite()));
+		}
+		if (loader != null) {
+			Factory<CacheLoader<Object, Object>> cacheLoader = () -> new FunctionCacheLoader(loader);
+			configuration.setCacheLoaderFactory(cacheLoader);
+			configuration.setReadThrough(true);
+			if (policy.refreshAfterWrite() != null) {
+				configuration.setRefreshAfterWrite(nanos(policy.refreshAfterWrite()));
+			}
+		}
+		return configuration;
+	}
+
+	private static int weigh(Object key, Object value) {
+		return (value instanceof Collection<?>collection) ? Math.max(1, collection.size()) : 1;
+	}
+
+	private static OptionalLong nanos(Duration duration) {
+		return OptionalLong.of(duration.toNanos());
+	}
+
+	private record FunctionCacheLoader(Function<Object, Object> function) implements CacheLoader<Object, Object> {
+
+		@Override
+		public Object load(Object key) {
+			return this.function.apply(key);
+		}
+
+		@Override
+		public Map<Object, Object> loadAll(Iterable<?> keys) {
+			Map<Object, Object> values = new HashMap<>();
+			keys.forEach(key -> values.put(key, load(key)));
+			return values;
+		}
+
 	}
 
 }
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.time.Duration;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Eviction and refresh policies of the application caches, bound from
+ * <code>petclinic.cache.*</code>. A cache listed under <code>specs</code> uses its own
+ * policy, falling back to the <code>defaults</code> for anything it leaves out. Caches
+ * named in <code>specs</code> are created up front, which is how Hibernate second-level
+ * cache regions get bounded.
+ *
+ * @param defaults the policy applied to every cache the application creates
+ * @param specs the per-cache policies, keyed by cache name
+ */
+@ConfigurationProperties("petclinic.cache")
+public record CachePolicyProperties(Policy defaults, Map<String, Policy> specs) {
+
+	public CachePolicyProperties {
+		defaults = (defaults != null) ? defaults : new Policy(null, null, null);
+		specs = (specs != null) ? Map.copyOf(specs) : Map.of();
+	}
+
+	/**
+	 * Return the policy of the given cache.
+	 * @param cacheName the name of the cache
+	 * @return the policy of the cache, completed from the defaults
+	 */
+	public Policy policy(String cacheName) {
+		Policy spec = this.specs.get(cacheName);
+		return (spec != null) ? spec.orElse(this.defaults) : this.defaults;
+	}
+
+	/**
+	 * Policy of a single cache, any part left {@literal null} is not applied.
+	 *
+	 * @param maximumWeight the maximum total weight of the entries, a collection weighs
+	 * its size and anything else weighs one
+	 * @param expireAfterWrite how long an entry lives after it has been written
+	 * @param refreshAfterWrite how long after it has been written an entry is reloaded
+	 * asynchronously on its next read, while the stale value is still served. Only
+	 * applies to caches that have a loader.
+	 */
+	public record Policy(Long maximumWeight, Duration expireAfterWrite, Duration refreshAfterWrite) {
+
+		Policy orElse(Policy other) {
+			return new Policy((this.maximumWeight != null) ? this.maximumWeight : other.maximumWeight,
+					(this.expireAfterWrite != null) ? this.expireAfterWrite : other.expireAfterWrite,
+					(this.refreshAfterWrite != null) ? this.refreshAfterWrite : other.refreshAfterWrite);
+		}
+
+	}
+
+}
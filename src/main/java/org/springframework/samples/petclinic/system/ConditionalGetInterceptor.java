@@ -0,0 +1,75 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.util.Map;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Answers conditional GET requests to {@link VersionedResources} from their version
+ * alone. The strong ETag combines the start time of the application, so a redeployment
+ * invalidates all tags, with the version of the resource and the variant of the
+ * representation: full page or htmx fragment, and the locale. Matching requests get a 304
+ * before the handler runs, so neither its model attributes nor its view are built. The
+ * version is kept as a request attribute, taken before the handler loads any data, for
+ * the {@link FragmentCache}.
+ */
+class ConditionalGetInterceptor implements HandlerInterceptor {
+
+	/**
+	 * Name of the request attribute holding the version of the requested resource.
+	 */
+	static final String VERSION_ATTRIBUTE = ConditionalGetInterceptor.class.getName() + ".version";
+
+	private static final String VARY = String.join(", ", HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_LANGUAGE, "HX-Request");
+
+	private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		if (!(handler instanceof HandlerMethod method) || !(method.getBean() instanceof VersionedResources resources)
+				|| !("GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod()))) {
+			return true;
+		}
+		String pattern = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+		if (pattern == null) {
+			return true;
+		}
+		Map<String, String> uriVariables = (Map<String, String>) request
+			.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+		String version = resources.version(pattern, (uriVariables != null) ? uriVariables : Map.of(), request);
+		if (version == null) {
+			return true;
+		}
+		request.setAttribute(VERSION_ATTRIBUTE, version);
+		String variant = ("true".equals(request.getHeader("HX-Request")) ? "hx-" : "page-")
+				+ request.getLocale().toLanguageTag();
+		response.setHeader(HttpHeaders.VARY, VARY);
+		response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+		String etag = "\"" + this.epoch + "-" + version + "-" + variant + "\"";
+		return !new ServletWebRequest(request, response).checkNotModified(etag);
+	}
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.samples.petclinic.owner.OwnerSaved;
+import org.springframework.samples.petclinic.owner.VisitAdded;
+import org.springframework.samples.petclinic.vet.VetDirectoryRefreshed;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.View;
+import org.springframework.web.servlet.ViewResolver;
+import org.springframework.web.servlet.support.RequestContextUtils;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.thymeleaf.spring6.view.ThymeleafViewResolver;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Cache of the rendered HTML of the htmx fragments whose data rarely changes. Each
+ * fragment selector has its own cache, so Micrometer reports the hit rate of every
+ * fragment on its own. Entries are keyed by the locale and the version of the requested
+ * {@link VersionedResources resource}, as taken by the {@link ConditionalGetInterceptor}
+ * before the handler loaded the data, along with the URI variables of the request. A GET
+ * request for a cached fragment still runs its handler, but the template is not rendered
+ * again. The entries of an owner are evicted once it was saved or one of its pets got a
+ * visit, the vets fragments whenever the vet directory is refreshed.
+ */
+@Component
+class FragmentCache implements ViewResolver, Ordered {
+
+	/**
+	 * The cached fragment selectors and the names of their caches.
+	 */
+	static final Map<String, String> CACHES = Map.of("fragments/vets :: list", "vetListFragment",
+			"fragments/owners :: details", "ownerDetailsFragment", "fragments/welcome :: welcome", "welcomeFragment");
+
+	private final CacheManager cacheManager;
+
+	private final ObjectProvider<ThymeleafViewResolver> views;
+
+	FragmentCache(CacheManager cacheManager, ObjectProvider<ThymeleafViewResolver> views) {
+		this.cacheManager = cacheManager;
+		this.views = views;
+	}
+
+	/**
+	 * Wrap the Thymeleaf view of a cached fragment selector, ahead of the Thymeleaf view
+	 * resolver itself.
+	 */
+	@Override
+	public View resolveViewName(String viewName, Locale locale) throws Exception {
+		String cacheName = CACHES.get(viewName);
+		ThymeleafViewResolver resolver = this.views.getIfAvailable();
+		if (cacheName == null || resolver == null) {
+			return null;
+		}
+		View view = resolver.resolveViewName(viewName, locale);
+		return (view != null) ? new CachedView(view, this.cacheManager.getCache(cacheName)) : null;
+	}
+
+	@Override
+	public int getOrder() {
+		return Ordered.HIGHEST_PRECEDENCE + 10;
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onOwnerSaved(OwnerSaved event) {
+		evictOwner(event.owner().getId());
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onVisitAdded(VisitAdded event) {
+		evictOwner(event.ownerId());
+	}
+
+	@EventListener
+	public void onVetDirectoryRefreshed(VetDirectoryRefreshed event) {
+		Cache cache = this.cacheManager.getCache(CACHES.get("fragments/vets :: list"));
+		if (cache != null) {
+			cache.clear();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void evictOwner(Integer ownerId) {
+		Cache cache = this.cacheManager.getCache(CACHES.get("fragments/owners :: details"));
+		if (cache == null || ownerId == null) {
+			return;
+		}
+		String id = ownerId.toString();
+		List<Key> evicted = new ArrayList<>();
+		// iterating the entries leaves the hit rate alone
+		for (javax.cache.Cache.Entry<Object, Object> entry : (javax.cache.Cache<Object, Object>) cache
+			.getNativeCache()) {
+			if (entry.getKey() instanceof Key key && id.equals(key.uriVariables().get("ownerId"))) {
+				evicted.add(key);
+			}
+		}
+		evicted.forEach(cache::evict);
+	}
+
+	/**
+	 * Key of a rendered fragment within the cache of its selector.
+	 */
+	record Key(Map<String, String> uriVariables, Locale locale, String version) implements Serializable {
+
+	}
+
+	/**
+	 * The rendered fragment along with its content type.
+	 */
+	record Rendered(String contentType, byte[] body) implements Serializable {
+
+	}
+
+	/**
+	 * View rendering its fragment from the cache, or through the Thymeleaf view into the
+	 * cache. Requests without a version, other than GET or carrying flash attributes are
+	 * rendered as usual.
+	 */
+	private static class CachedView implements View {
+
+		private final View view;
+
+		private final Cache cache;
+
+		CachedView(View view, Cache cache) {
+			this.view = view;
+			this.cache = cache;
+		}
+
+		@Override
+		public String getContentType() {
+			return this.view.getContentType();
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public void render(Map<String, ?> model, HttpServletRequest request, HttpServletResponse response)
+				throws Exception {
+			String version = (String) request.getAttribute(ConditionalGetInterceptor.VERSION_ATTRIBUTE);
+			Map<String, ?> flash = RequestContextUtils.getInputFlashMap(request);
+			if (version == null || !"GET".equals(request.getMethod()) || (flash != null && !flash.isEmpty())) {
+				this.view.render(model, request, response);
+				return;
+			}
+			Map<String, String> uriVariables = (Map<String, String>) request
+				.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+			Key key = new Key(Map.copyOf(Objects.requireNonNullElse(uriVariables, Map.of())),
+					RequestContextUtils.getLocale(request), version);
+			Rendered rendered = this.cache.get(key, Rendered.class);
+			if (rendered != null) {
+				response.setContentType(rendered.contentType());
+				response.setContentLength(rendered.body().length);
+				response.getOutputStream().write(rendered.body());
+				return;
+			}
+			ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+			this.view.render(model, request, wrapper);
+			if (wrapper.getStatus() == HttpServletResponse.SC_OK) {
+				this.cache.put(key, new Rendered(wrapper.getContentType(), wrapper.getContentAsByteArray()));
+			}
+			wrapper.copyBodyToResponse();
+		}
+
+	}
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.util.Map;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Implemented by controllers whose resources carry a cheap version, typically a
+ * generation counter bumped whenever the underlying data changes. The
+ * {@link ConditionalGetInterceptor} derives a strong ETag from the version and answers
+ * conditional GET requests for unchanged resources with 304, before the handler loads any
+ * data or renders any template.
+ */
+public interface VersionedResources {
+
+	/**
+	 * Return the current version of the resource the given GET request is for. The
+	 * version must change whenever the representation of the resource changes, apart from
+	 * the htmx and locale variants, which the ETag already tells apart.
+	 * @param pattern the mapping pattern of the request, e.g.
+	 * <code>/owners/{ownerId}</code>
+	 * @param uriVariables the URI template variables of the request
+	 * @param request the request
+	 * @return the version, or {@literal null} if the resource is not versioned
+	 */
+	String version(String pattern, Map<String, String> uriVariables, HttpServletRequest request);
+
+}
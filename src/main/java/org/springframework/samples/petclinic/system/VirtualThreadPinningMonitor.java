@@ -0,0 +1,110 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.time.Duration;
+import java.util.stream.Collectors;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * Reports virtual threads that pinned their carrier thread, while requests are handled on
+ * virtual threads (<code>spring.threads.virtual.enabled=true</code> on Java 21 or later).
+ * A virtual thread blocking inside a <code>synchronized</code> block or a native frame
+ * cannot unmount, so it holds on to one of the few carrier threads and the mode degrades
+ * to a small platform-thread pool. The monitor streams the
+ * <code>jdk.VirtualThreadPinned</code> JFR events longer than
+ * <code>petclinic.threads.pinned-threshold</code> from the running JVM, times them as
+ * <code>jvm.threads.virtual.pinned</code> and logs where each one blocked.
+ */
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+class VirtualThreadPinningMonitor implements SmartLifecycle {
+
+	static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+	private static final int LOGGED_FRAMES = 12;
+
+	private static final Log logger = LogFactory.getLog(VirtualThreadPinningMonitor.class);
+
+	private final Duration threshold;
+
+	private final Timer pinned;
+
+	private volatile RecordingStream stream;
+
+	VirtualThreadPinningMonitor(@Value("${petclinic.threads.pinned-threshold:20ms}") Duration threshold,
+			MeterRegistry registry) {
+		this.threshold = threshold;
+		this.pinned = Timer.builder("jvm.threads.virtual.pinned")
+			.description("Time virtual threads blocked while pinned to their carrier thread")
+			.register(registry);
+	}
+
+	@Override
+	public void start() {
+		RecordingStream stream = new RecordingStream();
+		stream.enable(PINNED_EVENT).withThreshold(this.threshold).withStackTrace();
+		stream.onEvent(PINNED_EVENT, this::onPinned);
+		stream.startAsync();
+		this.stream = stream;
+	}
+
+	@Override
+	public void stop() {
+		RecordingStream stream = this.stream;
+		this.stream = null;
+		if (stream != null) {
+			stream.close();
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.stream != null;
+	}
+
+	private void onPinned(RecordedEvent event) {
+		this.pinned.record(event.getDuration());
+		if (logger.isWarnEnabled()) {
+			String frames = (event.getStackTrace() != null) ? event.getStackTrace()
+				.getFrames()
+				.stream()
+				.limit(LOGGED_FRAMES)
+				.map(VirtualThreadPinningMonitor::describe)
+				.collect(Collectors.joining("\n\tat ", "\n\tat ", "")) : "";
+			logger.warn("Virtual thread pinned its carrier for " + event.getDuration().toMillis() + " ms" + frames);
+		}
+	}
+
+	private static String describe(RecordedFrame frame) {
+		return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + "(line "
+				+ frame.getLineNumber() + ")";
+	}
+
+}
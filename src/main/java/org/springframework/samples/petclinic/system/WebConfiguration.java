@@ -0,0 +1,93 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+import org.springframework.web.servlet.resource.PathResourceResolver;
+import org.thymeleaf.TemplateEngine;
+
+/**
+ * Spring MVC configuration of the application: conditional GET support for
+ * {@link VersionedResources}, and the fingerprinted static assets of the
+ * {@link AssetManifest}.
+ */
+@Configuration(proxyBeanMethods = false)
+class WebConfiguration implements WebMvcConfigurer {
+
+	private final AssetManifest assets;
+
+	WebConfiguration(AssetManifest assets) {
+		this.assets = assets;
+	}
+
+	@Bean
+	static AssetManifest assetManifest() {
+		return AssetManifest.load();
+	}
+
+	/**
+	 * Let the template links to static assets point to their fingerprinted files.
+	 */
+	@Bean
+	static BeanPostProcessor assetLinkBuilderPostProcessor(ObjectProvider<AssetManifest> assets) {
+		return new BeanPostProcessor() {
+
+			@Override
+			public Object postProcessBeforeInitialization(Object bean, String beanName) {
+				if (bean instanceof TemplateEngine engine && !assets.getObject().isEmpty()) {
+					engine.setLinkBuilder(new AssetLinkBuilder(assets.getObject()));
+				}
+				return bean;
+			}
+
+		};
+	}
+
+	/**
+	 * The fingerprinted files change their name whenever their content changes, so they
+	 * are cached for a year without revalidation. Requests accepting brotli or gzip get
+	 * the precompressed variants, no response is compressed at runtime. Resolved straight
+	 * from the assets directory, without looking up WebJar versions on the classpath.
+	 */
+	@Override
+	public void addResourceHandlers(ResourceHandlerRegistry registry) {
+		if (this.assets.isEmpty()) {
+			return;
+		}
+		registry.addResourceHandler(AssetManifest.PATH + "**")
+			.addResourceLocations("classpath:" + AssetManifest.PATH)
+			.setCacheControl(CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable())
+			.resourceChain(true)
+			.addResolver(new EncodedResourceResolver())
+			.addResolver(new PathResourceResolver());
+	}
+
+	@Override
+	public void addInterceptors(InterceptorRegistry registry) {
+		registry.addInterceptor(new ConditionalGetInterceptor());
+	}
+
+}
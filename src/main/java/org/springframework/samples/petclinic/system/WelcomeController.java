@@ -16,13 +16,24 @@
 
 package org.springframework.samples.petclinic.system;
 
+import java.util.Map;
+
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 
 import io.github.wimdeblauwe.htmx.spring.boot.mvc.HxRequest;
+import jakarta.servlet.http.HttpServletRequest;
 
 @Controller
-class WelcomeController {
+class WelcomeController implements VersionedResources {
+
+	/**
+	 * The welcome page renders no data, it only changes with a redeployment.
+	 */
+	@Override
+	public String version(String pattern, Map<String, String> uriVariables, HttpServletRequest request) {
+		return "/".equals(pattern) ? "0" : null;
+	}
 
 	@GetMapping("/")
 	public String welcome() {
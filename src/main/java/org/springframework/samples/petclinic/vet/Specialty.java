@@ -15,9 +15,15 @@
  */
 package org.springframework.samples.petclinic.vet;
 
+import java.util.Comparator;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Immutable;
 import org.springframework.samples.petclinic.model.NamedEntity;
 
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.Table;
 
 /**
@@ -27,6 +33,16 @@ import jakarta.persistence.Table;
  */
 @Entity
 @Table(name = "specialties")
-public class Specialty extends NamedEntity {
+@EntityListeners(VetDirectory.Listener.class)
+@Immutable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
+public class Specialty extends NamedEntity implements Comparable<Specialty> {
+
+	@Override
+	public int compareTo(Specialty other) {
+		return Comparator.comparing(Specialty::getName, Comparator.nullsFirst(Comparator.naturalOrder()))
+			.thenComparing(Specialty::getId, Comparator.nullsFirst(Comparator.naturalOrder()))
+			.compare(this, other);
+	}
 
 }
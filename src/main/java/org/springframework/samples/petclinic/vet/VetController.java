@@ -16,10 +16,11 @@
 package org.springframework.samples.petclinic.vet;
 
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.samples.petclinic.system.VersionedResources;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -27,6 +28,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
 import io.github.wimdeblauwe.htmx.spring.boot.mvc.HxRequest;
+import jakarta.servlet.http.HttpServletRequest;
 
 /**
  * @author Juergen Hoeller
@@ -36,12 +38,26 @@ import io.github.wimdeblauwe.htmx.spring.boot.mvc.HxRequest;
  * @author Alexandre Grison
  */
 @Controller
-class VetController {
+class VetController implements VersionedResources {
 
-	private final VetRepository vetRepository;
+	private final VetDirectory vetDirectory;
 
-	public VetController(VetRepository clinicService) {
-		this.vetRepository = clinicService;
+	public VetController(VetDirectory vetDirectory) {
+		this.vetDirectory = vetDirectory;
+	}
+
+	/**
+	 * The vets page and resource are versioned by the generation of the
+	 * {@link VetDirectory} snapshot, along with the page or the accepted media types.
+	 */
+	@Override
+	public String version(String pattern, Map<String, String> uriVariables, HttpServletRequest request) {
+		return switch (pattern) {
+			case "/vets.html" -> this.vetDirectory.generation() + ".p" + request.getParameter("page");
+			case "/vets" -> this.vetDirectory.generation() + "."
+					+ Integer.toHexString(String.valueOf(request.getHeader(HttpHeaders.ACCEPT)).hashCode());
+			default -> null;
+		};
 	}
 
 	@GetMapping("/vets.html")
@@ -75,17 +91,16 @@ class VetController {
 
 	private Page<Vet> findPaginated(int page) {
 		int pageSize = 5;
-		Pageable pageable = PageRequest.of(page - 1, pageSize);
-		return vetRepository.findAll(pageable);
+		return vetDirectory.findPage(page, pageSize);
 	}
 
 	@GetMapping({ "/vets" })
 	public @ResponseBody Vets showResourcesVetList() {
 		// Here we are returning an object of type 'Vets' rather than a collection of Vet
-		// objects so it is simpler for JSon/Object mapping
-		Vets vets = new Vets();
-		vets.getVetList().addAll(this.vetRepository.findAll());
-		return vets;
+		// objects so it is simpler for JSon/Object mapping. The directory returns the
+		// same instance until it is refreshed, so the VetsHttpMessageConverter can write
+		// cached bytes
+		return this.vetDirectory.findResource();
 	}
 
 }
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.vet;
+
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * Immutable snapshot of all {@link Vet}s and their (sorted) specialties, loaded by a
+ * single query on first use. Both the vets page and the vets resource are served from the
+ * snapshot, pages are slices of the same array and the resource is the same {@link Vets}
+ * instance until the next refresh, so its encoded forms can be cached along with it. The
+ * snapshot is refreshed by the {@link Listener} on {@link Vet} and {@link Specialty} once
+ * a transaction changing either committed, or explicitly through {@link #refresh()}, and
+ * every refresh publishes a {@link VetDirectoryRefreshed} event.
+ */
+@Component
+public class VetDirectory {
+
+	private final VetRepository vets;
+
+	private final ApplicationEventPublisher events;
+
+	// a lock rather than a monitor, a virtual thread waiting for the query while holding
+	// it does not pin its carrier thread
+	private final Lock refreshLock = new ReentrantLock();
+
+	private volatile Snapshot snapshot;
+
+	public VetDirectory(VetRepository vets, ApplicationEventPublisher events) {
+		this.vets = vets;
+		this.events = events;
+	}
+
+	/**
+	 * Return all {@link Vet}s, ordered by id.
+	 * @return an immutable List of {@link Vet}s
+	 */
+	public List<Vet> findAll() {
+		return snapshot().vets();
+	}
+
+	/**
+	 * Return all {@link Vet}s, ordered by id, wrapped for the vets resource. The same
+	 * instance is returned until the snapshot is refreshed.
+	 * @return the {@link Vets}, not to be modified
+	 */
+	public Vets findResource() {
+		return snapshot().resource();
+	}
+
+	/**
+	 * Return the generation of the current snapshot, a new one is taken on every refresh.
+	 * @return the generation
+	 */
+	public long generation() {
+		return snapshot().generation();
+	}
+
+	/**
+	 * Return a page of the {@link Vet}s.
+	 * @param page the 1-based page number
+	 * @param size the page size
+	 * @return the requested {@link Page} of {@link Vet}s, empty if out of range
+	 */
+	public Page<Vet> findPage(int page, int size) {
+		List<Vet> all = findAll();
+		int from = Math.min(Math.max(page - 1, 0) * size, all.size());
+		int to = Math.min(from + size, all.size());
+		return new PageImpl<>(all.subList(from, to), PageRequest.of(Math.max(page - 1, 0), size), all.size());
+	}
+
+	/**
+	 * Load the {@link Vet}s again and atomically replace the current snapshot.
+	 * @return the new snapshot
+	 */
+	public List<Vet> refresh() {
+		this.refreshLock.lock();
+		try {
+			return reload().vets();
+		}
+		finally {
+			this.refreshLock.unlock();
+		}
+	}
+
+	private Snapshot snapshot() {
+		Snapshot current = this.snapshot;
+		return (current != null) ? current : load();
+	}
+
+	private Snapshot load() {
+		this.refreshLock.lock();
+		try {
+			// concurrent first readers wait for the first of them to load the snapshot
+			Snapshot current = this.snapshot;
+			return (current != null) ? current : reload();
+		}
+		finally {
+			this.refreshLock.unlock();
+		}
+	}
+
+	private Snapshot reload() {
+		// an immutable, array backed list, so pages are cheap views of the same array
+		List<Vet> current = List.copyOf(this.vets.findAllWithSpecialties());
+		long generation = (this.snapshot != null) ? this.snapshot.generation() + 1 : 1;
+		Snapshot snapshot = new Snapshot(current, new Vets(current), generation);
+		this.snapshot = snapshot;
+		this.events.publishEvent(new VetDirectoryRefreshed(generation));
+		return snapshot;
+	}
+
+	private record Snapshot(List<Vet> vets, Vets resource, long generation) {
+
+	}
+
+	/**
+	 * JPA entity listener of {@link Vet} and {@link Specialty} refreshing the
+	 * {@link VetDirectory} after the surrounding transaction committed. Specialties are
+	 * immutable, so only vets are ever updated, specialties are added or removed.
+	 */
+	static class Listener {
+
+		private final ObjectProvider<VetDirectory> directory;
+
+		Listener(ObjectProvider<VetDirectory> directory) {
+			this.directory = directory;
+		}
+
+		@PostPersist
+		@PostUpdate
+		@PostRemove
+		void changed(Object entity) {
+			VetDirectory directory = this.directory.getIfAvailable();
+			if (directory == null) {
+				return;
+			}
+			if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+				directory.refresh();
+				return;
+			}
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCommit() {
+					directory.refresh();
+				}
+			});
+		}
+
+	}
+
+}
@@ -32,6 +32,13 @@ public class Vets {
 
 	private List<Vet> vets;
 
+	public Vets() {
+	}
+
+	Vets(List<Vet> vets) {
+		this.vets = vets;
+	}
+
 	@XmlElement
 	public List<Vet> getVetList() {
 		if (vets == null) {
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.vet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.JAXBException;
+import jakarta.xml.bind.Marshaller;
+
+/**
+ * Writes the {@link Vets} resource as JSON or XML from bytes encoded once per
+ * {@link VetDirectory} snapshot. The directory hands out the same {@link Vets} instance
+ * until it is refreshed, so the encoded bodies are cached against that instance and
+ * repeated requests copy them straight to the response. Content negotiation is left to
+ * Spring MVC; this converter is registered ahead of the Jackson and JAXB converters and
+ * encodes exactly like them.
+ */
+@Component
+class VetsHttpMessageConverter extends AbstractHttpMessageConverter<Vets> {
+
+	private final ObjectMapper objectMapper;
+
+	private final JAXBContext jaxbContext;
+
+	private volatile Encoded encoded = new Encoded(null);
+
+	VetsHttpMessageConverter(ObjectMapper objectMapper) throws JAXBException {
+		super(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"), MediaType.APPLICATION_XML,
+				MediaType.TEXT_XML, new MediaType("application", "*+xml"));
+		this.objectMapper = objectMapper;
+		this.jaxbContext = JAXBContext.newInstance(Vets.class);
+	}
+
+	@Override
+	protected boolean supports(Class<?> clazz) {
+		return Vets.class == clazz;
+	}
+
+	@Override
+	protected boolean canRead(MediaType mediaType) {
+		return false;
+	}
+
+	@Override
+	protected Vets readInternal(Class<? extends Vets> clazz, HttpInputMessage inputMessage) {
+		throw new HttpMessageNotReadableException("Vets are not read", inputMessage);
+	}
+
+	@Override
+	protected Long getContentLength(Vets vets, MediaType contentType) {
+		return (long) body(vets, contentType).length;
+	}
+
+	@Override
+	protected void writeInternal(Vets vets, HttpOutputMessage outputMessage) throws IOException {
+		StreamUtils.copy(body(vets, outputMessage.getHeaders().getContentType()), outputMessage.getBody());
+	}
+
+	private byte[] body(Vets vets, MediaType contentType) {
+		Encoded current = this.encoded;
+		if (current.vets() != vets) {
+			current = new Encoded(vets);
+			this.encoded = current;
+		}
+		boolean xml = contentType != null && contentType.getSubtype().endsWith("xml");
+		return current.bodies().computeIfAbsent(xml ? "xml" : "json", key -> xml ? toXml(vets) : toJson(vets));
+	}
+
+	private byte[] toJson(Vets vets) {
+		try {
+			return this.objectMapper.writeValueAsBytes(vets);
+		}
+		catch (IOException ex) {
+			throw new HttpMessageNotWritableException("Could not write JSON: " + ex.getMessage(), ex);
+		}
+	}
+
+	private byte[] toXml(Vets vets) {
+		try {
+			Marshaller marshaller = this.jaxbContext.createMarshaller();
+			marshaller.setProperty(Marshaller.JAXB_ENCODING, StandardCharsets.UTF_8.name());
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			marshaller.marshal(vets, out);
+			return out.toByteArray();
+		}
+		catch (JAXBException ex) {
+			throw new HttpMessageNotWritableException("Could not marshal [" + vets + "]: " + ex.getMessage(), ex);
+		}
+	}
+
+	/**
+	 * The encoded bodies of one {@link Vets} instance, by format.
+	 */
+	private record Encoded(Vets vets, Map<String, byte[]> bodies) {
+
+		Encoded(Vets vets) {
+			this(vets, new ConcurrentHashMap<>());
+		}
+
+	}
+
+}
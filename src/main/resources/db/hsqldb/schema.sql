@@ -5,10 +5,26 @@ DROP TABLE visits IF EXISTS;
 DROP TABLE pets IF EXISTS;
 DROP TABLE types IF EXISTS;
 DROP TABLE owners IF EXISTS;
+DROP SEQUENCE vets_seq IF EXISTS;
+DROP SEQUENCE specialties_seq IF EXISTS;
+DROP SEQUENCE types_seq IF EXISTS;
+DROP SEQUENCE owners_seq IF EXISTS;
+DROP SEQUENCE pets_seq IF EXISTS;
+DROP SEQUENCE visits_seq IF EXISTS;
 
 
+-- Hibernate allocates the ids of new rows from these sequences, 50 at a time, the
+-- identity columns only number the sample data
+CREATE SEQUENCE vets_seq START WITH 1000 INCREMENT BY 50;
+CREATE SEQUENCE specialties_seq START WITH 1000 INCREMENT BY 50;
+CREATE SEQUENCE types_seq START WITH 1000 INCREMENT BY 50;
+CREATE SEQUENCE owners_seq START WITH 1000 INCREMENT BY 50;
+CREATE SEQUENCE pets_seq START WITH 1000 INCREMENT BY 50;
+CREATE SEQUENCE visits_seq START WITH 1000 INCREMENT BY 50;
+
 CREATE TABLE vets (
   id         INTEGER IDENTITY PRIMARY KEY,
+  version    INTEGER DEFAULT 0 NOT NULL,
   first_name VARCHAR(30),
   last_name  VARCHAR(30)
 );
@@ -16,6 +32,7 @@ CREATE INDEX vets_last_name ON vets (last_name);
 
 CREATE TABLE specialties (
   id   INTEGER IDENTITY PRIMARY KEY,
+  version INTEGER DEFAULT 0 NOT NULL,
   name VARCHAR(80)
 );
 CREATE INDEX specialties_name ON specialties (name);
@@ -29,22 +46,27 @@ ALTER TABLE vet_specialties ADD CONSTRAINT fk_vet_specialties_specialties FOREIG
 
 CREATE TABLE types (
   id   INTEGER IDENTITY PRIMARY KEY,
+  version INTEGER DEFAULT 0 NOT NULL,
   name VARCHAR(80)
 );
 CREATE INDEX types_name ON types (name);
 
 CREATE TABLE owners (
   id         INTEGER IDENTITY PRIMARY KEY,
+  version    INTEGER DEFAULT 0 NOT NULL,
   first_name VARCHAR(30),
   last_name  VARCHAR_IGNORECASE(30),
   address    VARCHAR(255),
   city       VARCHAR(80),
-  telephone  VARCHAR(20)
+  telephone  VARCHAR(20),
+  last_name_key VARCHAR(30) GENERATED ALWAYS AS (LOWER(last_name))
 );
 CREATE INDEX owners_last_name ON owners (last_name);
+CREATE INDEX owners_last_name_key ON owners (last_name_key, id);
 
 CREATE TABLE pets (
   id         INTEGER IDENTITY PRIMARY KEY,
+  version    INTEGER DEFAULT 0 NOT NULL,
   name       VARCHAR(30),
   birth_date DATE,
   type_id    INTEGER NOT NULL,
@@ -54,8 +76,11 @@ ALTER TABLE pets ADD CONSTRAINT fk_pets_owners FOREIGN KEY (owner_id) REFERENCES
 ALTER TABLE pets ADD CONSTRAINT fk_pets_types FOREIGN KEY (type_id) REFERENCES types (id);
 CREATE INDEX pets_name ON pets (name);
 
+-- visits inserted without an id take a whole block of the sequence, so they never
+-- collide with the ids Hibernate allocates from it
 CREATE TABLE visits (
-  id          INTEGER IDENTITY PRIMARY KEY,
+  id          INTEGER GENERATED BY DEFAULT AS SEQUENCE visits_seq PRIMARY KEY,
+  version     INTEGER DEFAULT 0 NOT NULL,
   pet_id      INTEGER,
   visit_date  DATE,
   description VARCHAR(255)
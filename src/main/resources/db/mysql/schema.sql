@@ -1,5 +1,6 @@
 CREATE TABLE IF NOT EXISTS vets (
   id INT(4) UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+  version INT(4) UNSIGNED NOT NULL DEFAULT 0,
   first_name VARCHAR(30),
   last_name VARCHAR(30),
   INDEX(last_name)
@@ -7,6 +8,7 @@ CREATE TABLE IF NOT EXISTS vets (
 
 CREATE TABLE IF NOT EXISTS specialties (
   id INT(4) UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+  version INT(4) UNSIGNED NOT NULL DEFAULT 0,
   name VARCHAR(80),
   INDEX(name)
 ) engine=InnoDB;
@@ -21,22 +23,27 @@ CREATE TABLE IF NOT EXISTS vet_specialties (
 
 CREATE TABLE IF NOT EXISTS types (
   id INT(4) UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+  version INT(4) UNSIGNED NOT NULL DEFAULT 0,
   name VARCHAR(80),
   INDEX(name)
 ) engine=InnoDB;
 
 CREATE TABLE IF NOT EXISTS owners (
   id INT(4) UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+  version INT(4) UNSIGNED NOT NULL DEFAULT 0,
   first_name VARCHAR(30),
   last_name VARCHAR(30),
   address VARCHAR(255),
   city VARCHAR(80),
   telephone VARCHAR(20),
-  INDEX(last_name)
+  last_name_key VARCHAR(30) AS (LOWER(last_name)) STORED,
+  INDEX(last_name),
+  INDEX(last_name_key, id)
 ) engine=InnoDB;
 
 CREATE TABLE IF NOT EXISTS pets (
   id INT(4) UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+  version INT(4) UNSIGNED NOT NULL DEFAULT 0,
   name VARCHAR(30),
   birth_date DATE,
   type_id INT(4) UNSIGNED NOT NULL,
@@ -48,8 +55,58 @@ CREATE TABLE IF NOT EXISTS pets (
 
 CREATE TABLE IF NOT EXISTS visits (
   id INT(4) UNSIGNED NOT NULL AUTO_INCREMENT PRIMARY KEY,
+  version INT(4) UNSIGNED NOT NULL DEFAULT 0,
   pet_id INT(4) UNSIGNED,
   visit_date DATE,
   description VARCHAR(255),
   FOREIGN KEY (pet_id) REFERENCES pets(id)
 ) engine=InnoDB;
+
+-- databases created by earlier versions of this script lack the optimistic locking
+-- versions and the lower-cased last name; MySQL cannot add a column only if it does not
+-- exist, so each migration is prepared from the columns the table has. The versions go
+-- right after the id, where data.sql expects them. The ids stay AUTO_INCREMENT, the
+-- mysql profile maps them as identity columns in orm.xml, so unlike on PostgreSQL there
+-- are no sequences to move past the existing ids.
+
+SET @migration = IF((SELECT COUNT(*) FROM information_schema.columns WHERE table_schema = DATABASE()
+  AND table_name = 'vets' AND column_name = 'version') = 0, 'ALTER TABLE vets ADD COLUMN version INT(4) UNSIGNED NOT NULL DEFAULT 0 AFTER id', 'DO 0');
+PREPARE migration FROM @migration;
+EXECUTE migration;
+DEALLOCATE PREPARE migration;
+
+SET @migration = IF((SELECT COUNT(*) FROM information_schema.columns WHERE table_schema = DATABASE()
+  AND table_name = 'specialties' AND column_name = 'version') = 0, 'ALTER TABLE specialties ADD COLUMN version INT(4) UNSIGNED NOT NULL DEFAULT 0 AFTER id', 'DO 0');
+PREPARE migration FROM @migration;
+EXECUTE migration;
+DEALLOCATE PREPARE migration;
+
+SET @migration = IF((SELECT COUNT(*) FROM information_schema.columns WHERE table_schema = DATABASE()
+  AND table_name = 'types' AND column_name = 'version') = 0, 'ALTER TABLE types ADD COLUMN version INT(4) UNSIGNED NOT NULL DEFAULT 0 AFTER id', 'DO 0');
+PREPARE migration FROM @migration;
+EXECUTE migration;
+DEALLOCATE PREPARE migration;
+
+SET @migration = IF((SELECT COUNT(*) FROM information_schema.columns WHERE table_schema = DATABASE()
+  AND table_name = 'owners' AND column_name = 'version') = 0, 'ALTER TABLE owners ADD COLUMN version INT(4) UNSIGNED NOT NULL DEFAULT 0 AFTER id', 'DO 0');
+PREPARE migration FROM @migration;
+EXECUTE migration;
+DEALLOCATE PREPARE migration;
+
+SET @migration = IF((SELECT COUNT(*) FROM information_schema.columns WHERE table_schema = DATABASE()
+  AND table_name = 'pets' AND column_name = 'version') = 0, 'ALTER TABLE pets ADD COLUMN version INT(4) UNSIGNED NOT NULL DEFAULT 0 AFTER id', 'DO 0');
+PREPARE migration FROM @migration;
+EXECUTE migration;
+DEALLOCATE PREPARE migration;
+
+SET @migration = IF((SELECT COUNT(*) FROM information_schema.columns WHERE table_schema = DATABASE()
+  AND table_name = 'visits' AND column_name = 'version') = 0, 'ALTER TABLE visits ADD COLUMN version INT(4) UNSIGNED NOT NULL DEFAULT 0 AFTER id', 'DO 0');
+PREPARE migration FROM @migration;
+EXECUTE migration;
+DEALLOCATE PREPARE migration;
+
+SET @migration = IF((SELECT COUNT(*) FROM information_schema.columns WHERE table_schema = DATABASE()
+  AND table_name = 'owners' AND column_name = 'last_name_key') = 0, 'ALTER TABLE owners ADD COLUMN last_name_key VARCHAR(30) AS (LOWER(last_name)) STORED, ADD INDEX(last_name_key, id)', 'DO 0');
+PREPARE migration FROM @migration;
+EXECUTE migration;
+DEALLOCATE PREPARE migration;
@@ -1,5 +1,15 @@
+-- Hibernate allocates the ids of new rows from these sequences, 50 at a time, the
+-- identity columns only number the sample data
+CREATE SEQUENCE IF NOT EXISTS vets_seq START WITH 1000 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS specialties_seq START WITH 1000 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS types_seq START WITH 1000 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS owners_seq START WITH 1000 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS pets_seq START WITH 1000 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS visits_seq START WITH 1000 INCREMENT BY 50;
+
 CREATE TABLE IF NOT EXISTS vets (
   id         INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  version    INT DEFAULT 0 NOT NULL,
   first_name TEXT,
   last_name  TEXT
 );
@@ -7,6 +17,7 @@ CREATE INDEX ON vets (last_name);
 
 CREATE TABLE IF NOT EXISTS specialties (
   id   INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  version INT DEFAULT 0 NOT NULL,
   name TEXT
 );
 CREATE INDEX ON specialties (name);
@@ -19,22 +30,26 @@ CREATE TABLE IF NOT EXISTS vet_specialties (
 
 CREATE TABLE IF NOT EXISTS types (
   id   INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  version INT DEFAULT 0 NOT NULL,
   name TEXT
 );
 CREATE INDEX ON types (name);
 
 CREATE TABLE IF NOT EXISTS owners (
   id         INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  version    INT DEFAULT 0 NOT NULL,
   first_name TEXT,
   last_name  TEXT,
   address    TEXT,
   city       TEXT,
-  telephone  TEXT
+  telephone  TEXT,
+  last_name_key TEXT COLLATE "C" GENERATED ALWAYS AS (LOWER(last_name)) STORED
 );
 CREATE INDEX ON owners (last_name);
 
 CREATE TABLE IF NOT EXISTS pets (
   id         INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  version    INT DEFAULT 0 NOT NULL,
   name       TEXT,
   birth_date DATE,
   type_id    INT NOT NULL REFERENCES types (id),
@@ -43,10 +58,45 @@ CREATE TABLE IF NOT EXISTS pets (
 CREATE INDEX ON pets (name);
 CREATE INDEX ON pets (owner_id);
 
+-- visits inserted without an id take a whole block of the sequence, so they never
+-- collide with the ids Hibernate allocates from it
 CREATE TABLE IF NOT EXISTS visits (
-  id          INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+  id          INT DEFAULT nextval('visits_seq') PRIMARY KEY,
+  version     INT DEFAULT 0 NOT NULL,
   pet_id      INT REFERENCES pets (id),
   visit_date  DATE,
   description TEXT
 );
 CREATE INDEX ON visits (pet_id);
+
+-- databases created by earlier versions of this script lack the optimistic locking
+-- versions, the lower-cased last name and the default of the visit ids, and their ids
+-- were numbered by identity columns, so the migration ends by moving the sequences past
+-- them. The mysql profile keeps identity columns through db/mysql/orm.xml, MySQL
+-- databases have no sequences to move.
+ALTER TABLE vets ADD COLUMN IF NOT EXISTS version INT DEFAULT 0 NOT NULL;
+ALTER TABLE specialties ADD COLUMN IF NOT EXISTS version INT DEFAULT 0 NOT NULL;
+ALTER TABLE types ADD COLUMN IF NOT EXISTS version INT DEFAULT 0 NOT NULL;
+ALTER TABLE owners ADD COLUMN IF NOT EXISTS version INT DEFAULT 0 NOT NULL;
+ALTER TABLE pets ADD COLUMN IF NOT EXISTS version INT DEFAULT 0 NOT NULL;
+ALTER TABLE visits ADD COLUMN IF NOT EXISTS version INT DEFAULT 0 NOT NULL;
+ALTER TABLE owners ADD COLUMN IF NOT EXISTS last_name_key TEXT COLLATE "C" GENERATED ALWAYS AS (LOWER(last_name)) STORED;
+CREATE INDEX IF NOT EXISTS owners_last_name_key_id_idx ON owners (last_name_key, id);
+ALTER TABLE visits ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE visits ALTER COLUMN id SET DEFAULT nextval('visits_seq');
+-- move each sequence past the ids already in its table. Hibernate takes the block of 50
+-- ids up to each value it draws, so the next value must be at least 50 above the
+-- largest id. Sequences only ever move forward, so a block drawn before is never handed
+-- out again.
+SELECT setval('vets_seq', (SELECT MAX(id) + 50 FROM vets), false) FROM vets_seq
+  WHERE (SELECT MAX(id) + 50 FROM vets) > CASE WHEN is_called THEN last_value + 50 ELSE last_value END;
+SELECT setval('specialties_seq', (SELECT MAX(id) + 50 FROM specialties), false) FROM specialties_seq
+  WHERE (SELECT MAX(id) + 50 FROM specialties) > CASE WHEN is_called THEN last_value + 50 ELSE last_value END;
+SELECT setval('types_seq', (SELECT MAX(id) + 50 FROM types), false) FROM types_seq
+  WHERE (SELECT MAX(id) + 50 FROM types) > CASE WHEN is_called THEN last_value + 50 ELSE last_value END;
+SELECT setval('owners_seq', (SELECT MAX(id) + 50 FROM owners), false) FROM owners_seq
+  WHERE (SELECT MAX(id) + 50 FROM owners) > CASE WHEN is_called THEN last_value + 50 ELSE last_value END;
+SELECT setval('pets_seq', (SELECT MAX(id) + 50 FROM pets), false) FROM pets_seq
+  WHERE (SELECT MAX(id) + 50 FROM pets) > CASE WHEN is_called THEN last_value + 50 ELSE last_value END;
+SELECT setval('visits_seq', (SELECT MAX(id) + 50 FROM visits), false) FROM visits_seq
+  WHERE (SELECT MAX(id) + 50 FROM visits) > CASE WHEN is_called THEN last_value + 50 ELSE last_value END;
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.ApplicationContext;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Requests every handler method of the application, full pages and htmx fragments, and
+ * checks that none was left out, and that every request returned its database connection
+ * before its view was rendered. Run in AOT mode by the native profile and in a native
+ * image by the nativeTest profile, where it exercises the {@link PetClinicRuntimeHints}
+ * along with the reachability metadata of the libraries.
+ */
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+// the JCache cache manager is shared by the contexts of a class loader, close this one
+// before another application context creates the same caches
+@DirtiesContext
+class PetClinicEndpointsTests {
+
+	private static final Set<Method> requested = ConcurrentHashMap.newKeySet();
+
+	private static final Set<String> heldWhileRendering = ConcurrentHashMap.newKeySet();
+
+	@Autowired
+	private TestRestTemplate rest;
+
+	@Autowired
+	private ApplicationContext context;
+
+	@Autowired
+	private MeterRegistry meters;
+
+	static Stream<Call> calls() {
+		return Stream.of(Call.get("/", "Welcome"), Call.get("/owners/find", "lastName"),
+				Call.get("/owners/lookup?lastName=Dav", "Davis"), Call.get("/owners/search?q=Leo", "Franklin"),
+				Call.get("/owners?lastName=Davis", "Davis"), Call.get("/owners?cursor=&lastName=", "Owners"),
+				Call.get("/owners/1", "Franklin"), Call.get("/owners/new", "firstName"),
+				Call.get("/owners/1/edit", "Franklin"), Call.get("/owners/1/pets/new", "birthDate"),
+				Call.get("/owners/1/pets/1/edit", "Leo"), Call.get("/owners/6/pets/7/visits", "rabies shot"),
+				Call.get("/owners/1/pets/1/visits/new", "Leo"), Call.get("/vets.html", "Carter"),
+				Call.post("/owners/new",
+						"firstName=Endpoint&lastName=Tester&address=1+Main+St.&city=Madison&telephone=6085550000"),
+				Call.post("/owners/3/edit",
+						"firstName=Eduardo&lastName=Rodriquez&address=2693+Commerce+St.&city=McFarland&telephone=6085558763"),
+				Call.post("/owners/3/pets/new", "name=Endpoint&birthDate=2020-01-01&type=cat"),
+				Call.post("/owners/3/pets/3/edit", "name=Rosy&birthDate=2011-04-17&type=dog"),
+				Call.post("/owners/3/pets/3/visits/new", "date=2021-01-01&description=endpoint"),
+				Stream.of(Call.accept("/vets", MediaType.APPLICATION_JSON, "vetList"),
+						Call.accept("/vets", MediaType.APPLICATION_XML, "<vets>"),
+						Call.accept("/owners/export.csv", MediaType.ALL, "owner,George,Franklin"),
+						Call.accept("/owners/export.ndjson", MediaType.ALL, "\"lastName\":\"Franklin\""),
+						new Call(HttpMethod.POST, "/owners/import", false, MediaType.parseMediaType("text/csv"),
+								"owner,Imported,Csvowner,1 Main St.,Madison,6085550000\n", MediaType.APPLICATION_JSON,
+								HttpStatus.OK, "\"owners\":1"),
+						new Call(HttpMethod.POST, "/owners/import", false,
+								MediaType.parseMediaType("application/x-ndjson"),
+								"{\"firstName\":\"Imported\",\"lastName\":\"Jsonowner\",\"address\":\"1 Main St.\",\"city\":\"Madison\",\"telephone\":\"6085550000\"}\n",
+								MediaType.APPLICATION_JSON, HttpStatus.OK, "\"owners\":1"),
+						new Call(HttpMethod.GET, "/oups", false, null, null, MediaType.TEXT_HTML,
+								HttpStatus.INTERNAL_SERVER_ERROR, "Something happened"),
+						new Call(HttpMethod.GET, "/oups", true, null, null, MediaType.TEXT_HTML, HttpStatus.OK,
+								"Something happened")))
+			.flatMap(calls -> calls);
+	}
+
+	@Order(1)
+	@ParameterizedTest(name = "{0}")
+	@MethodSource("calls")
+	void testCall(Call call) {
+		RequestEntity.BodyBuilder request = RequestEntity.method(call.method(), call.path());
+		if (call.htmx()) {
+			request.header("HX-Request", "true");
+		}
+		if (call.accept() != null) {
+			request.accept(call.accept());
+		}
+		if (call.contentType() != null) {
+			request.contentType(call.contentType());
+		}
+		ResponseEntity<String> response = this.rest.exchange(request.body((call.body() != null) ? call.body() : ""),
+				String.class);
+
+		if (call.status() != null) {
+			assertThat(response.getStatusCode()).isEqualTo(call.status());
+		}
+		else {
+			assertThat(response.getStatusCode().is2xxSuccessful() || response.getStatusCode().is3xxRedirection())
+				.as("status %s", response.getStatusCode())
+				.isTrue();
+		}
+		if (call.expected() != null) {
+			assertThat(response.getBody()).contains(call.expected());
+		}
+	}
+
+	@Order(2)
+	@Test
+	void testEveryHandlerMethodRequested() {
+		RequestMappingHandlerMapping mapping = this.context.getBean("requestMappingHandlerMapping",
+				RequestMappingHandlerMapping.class);
+		Stream<Method> handlers = mapping.getHandlerMethods()
+			.values()
+			.stream()
+			.map(HandlerMethod::getMethod)
+			.filter(method -> method.getDeclaringClass().getName().startsWith("org.springframework.samples"));
+		assertThat(handlers).isNotEmpty().allSatisfy(method -> assertThat(requested).contains(method));
+	}
+
+	@Order(3)
+	@Test
+	void testConnectionsReturnedBeforeRendering() {
+		assertThat(this.meters.get("hikaricp.connections.usage").timer().count()).isPositive();
+		assertThat(heldWhileRendering).isEmpty();
+	}
+
+	/**
+	 * A request to the application: the GET requests of pages are made with and without
+	 * htmx, the POST requests submit a form.
+	 */
+	record Call(HttpMethod method, String path, boolean htmx, MediaType contentType, String body, MediaType accept,
+			HttpStatus status, String expected) {
+
+		static Stream<Call> get(String path, String expected) {
+			return Stream.of(new Call(HttpMethod.GET, path, false, null, null, MediaType.TEXT_HTML, null, expected),
+					new Call(HttpMethod.GET, path, true, null, null, MediaType.TEXT_HTML, null, expected));
+		}
+
+		static Stream<Call> post(String path, String form) {
+			return Stream.of(false, true)
+				.map(htmx -> new Call(HttpMethod.POST, path, htmx, MediaType.APPLICATION_FORM_URLENCODED, form,
+						MediaType.TEXT_HTML, null, null));
+		}
+
+		static Call accept(String path, MediaType accept, String expected) {
+			return new Call(HttpMethod.GET, path, false, null, null, accept, HttpStatus.OK, expected);
+		}
+
+		@Override
+		public String toString() {
+			return this.method + " " + this.path + (this.htmx ? " (htmx)" : "")
+					+ ((this.accept != null && !this.accept.equals(MediaType.TEXT_HTML)) ? " accepting " + this.accept
+							: "");
+		}
+
+	}
+
+	/**
+	 * Records the requested handler methods, and from the connection pool metrics every
+	 * request that still held a connection once its handler returned, or took one while
+	 * its view was rendered.
+	 */
+	@TestConfiguration(proxyBeanMethods = false)
+	static class Recorder implements WebMvcConfigurer {
+
+		private static final String USAGES_ATTRIBUTE = Recorder.class.getName() + ".usages";
+
+		private final MeterRegistry meters;
+
+		Recorder(MeterRegistry meters) {
+			this.meters = meters;
+		}
+
+		@Override
+		public void addInterceptors(InterceptorRegistry registry) {
+			registry.addInterceptor(new HandlerInterceptor() {
+
+				@Override
+				public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+					if (handler instanceof HandlerMethod method) {
+						requested.add(method.getMethod());
+					}
+					return true;
+				}
+
+				@Override
+				public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+						ModelAndView modelAndView) {
+					double active = Recorder.this.meters.get("hikaricp.connections.active").gauge().value();
+					if (active > 0) {
+						heldWhileRendering.add(request.getMethod() + " " + request.getRequestURI() + " held " + active
+								+ " connection(s) before rendering");
+					}
+					request.setAttribute(USAGES_ATTRIBUTE, usages());
+				}
+
+				@Override
+				public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+						Exception ex) {
+					Long before = (Long) request.getAttribute(USAGES_ATTRIBUTE);
+					if (before != null && usages() > before) {
+						heldWhileRendering
+							.add(request.getMethod() + " " + request.getRequestURI() + " used a connection rendering");
+					}
+				}
+
+			});
+		}
+
+		/**
+		 * Return how often a connection was returned to the pool, the hold time of each
+		 * is recorded when it is returned.
+		 */
+		private long usages() {
+			return Recorder.this.meters.get("hikaricp.connections.usage").timer().count();
+		}
+
+	}
+
+}
@@ -18,39 +18,525 @@ package org.springframework.samples.petclinic;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.QueryStatistics;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.boot.test.web.server.LocalServerPort;
 import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.RequestEntity;
 import org.springframework.http.ResponseEntity;
+import org.springframework.samples.petclinic.jdbc.StatementCounter;
+import org.springframework.samples.petclinic.owner.Owner;
+import org.springframework.samples.petclinic.owner.OwnerImporter;
+import org.springframework.samples.petclinic.owner.OwnerName;
+import org.springframework.samples.petclinic.owner.OwnerNameIndex;
+import org.springframework.samples.petclinic.owner.OwnerRepository;
+import org.springframework.samples.petclinic.owner.OwnerSearchIndex;
+import org.springframework.samples.petclinic.owner.OwnerVersions;
+import org.springframework.samples.petclinic.owner.Pet;
+import org.springframework.samples.petclinic.owner.Visit;
+import org.springframework.samples.petclinic.owner.VisitRepository;
+import org.springframework.samples.petclinic.owner.VisitSummary;
+import org.springframework.samples.petclinic.vet.VetDirectory;
 import org.springframework.samples.petclinic.vet.VetRepository;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestTemplate;
 
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+
 @SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT)
+@Import(StatementCounter.Configuration.class)
+// the JCache cache manager is shared by the contexts of a class loader, close this one
+// before another application context creates the same caches
+@DirtiesContext
 class PetClinicIntegrationTests {
 
+	private static final String UNIQUE = "{unique}";
+
+	private static final AtomicInteger uniqueNames = new AtomicInteger();
+
 	@LocalServerPort
 	int port;
 
 	@Autowired
 	private VetRepository vets;
 
+	@Autowired
+	private OwnerRepository owners;
+
+	@Autowired
+	private VetDirectory vetDirectory;
+
+	@Autowired
+	private VisitRepository visits;
+
+	private TransactionTemplate transactions;
+
+	@Autowired
+	private CacheManager cacheManager;
+
+	@Autowired
+	private javax.cache.CacheManager jcacheManager;
+
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Autowired
+	private OwnerNameIndex nameIndex;
+
+	@Autowired
+	private OwnerSearchIndex searchIndex;
+
+	@Autowired
+	private OwnerVersions versions;
+
+	@Autowired
+	private StatementCounter statements;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
 	@Autowired
 	private RestTemplateBuilder builder;
 
+	@Autowired
+	void setTransactionManager(PlatformTransactionManager transactionManager) {
+		this.transactions = new TransactionTemplate(transactionManager);
+	}
+
 	public static void main(String[] args) {
 		SpringApplication.run(PetClinicApplication.class, args);
 	}
 
 	@Test
 	void testFindAll() throws Exception {
-		vets.findAll();
-		vets.findAll(); // served from cache
+		assertThat(vets.findAll()).hasSize(6);
+	}
+
+	@Test
+	void testOwnerCountsEvictedOnSave() {
+		Cache counts = cacheManager.getCache("ownerCounts");
+		long davis = owners.countByLastName("Davis");
+		assertThat(counts.get("Davis")).isNotNull();
+
+		Owner owner = owners.findById(1);
+		owners.save(owner);
+		// a read would load the count again, so look at the entries themselves
+		assertThat(((javax.cache.Cache<Object, ?>) counts.getNativeCache()).containsKey("Davis")).isFalse();
+		assertThat(owners.countByLastName("Davis")).isEqualTo(davis);
+	}
+
+	@Test
+	void testCachePoliciesFromProperties() {
+		CaffeineConfiguration<?, ?> counts = jcache("ownerCounts");
+		assertThat(counts.getMaximumWeight()).hasValue(1000);
+		assertThat(counts.getRefreshAfterWrite()).hasValue(Duration.ofMinutes(1).toNanos());
+		assertThat(counts.isReadThrough()).isTrue();
+
+		CaffeineConfiguration<?, ?> vetList = jcache("vetListFragment");
+		assertThat(vetList.getMaximumWeight()).hasValue(100);
+		assertThat(vetList.getExpireAfterWrite()).hasValue(Duration.ofHours(1).toNanos());
+		assertThat(vetList.isReadThrough()).isFalse();
+
+		// the regions Hibernate creates on its own are the configured ones
+		CaffeineConfiguration<?, ?> ownerRegion = jcache(Owner.class.getName());
+		assertThat(ownerRegion.getMaximumWeight()).hasValue(10000);
+		assertThat(ownerRegion.getExpireAfterWrite()).hasValue(Duration.ofHours(1).toNanos());
+		assertThat(ownerRegion.isReadThrough()).isFalse();
+	}
+
+	@Test
+	void testCacheMetricsRegistered() {
+		owners.countByLastName("Franklin");
+		owners.countByLastName("Franklin");
+
+		assertThat(meterRegistry.get("cache.gets")
+			.tag("cache", "ownerCounts")
+			.tag("result", "hit")
+			.functionCounter()
+			.count()).isPositive();
+		assertThat(meterRegistry.get("cache.load.duration").tag("cache", "ownerCounts").timeGauge().value())
+			.isPositive();
+		assertThat(meterRegistry.get("cache.evictions").tag("cache", "vetListFragment").functionCounter()).isNotNull();
+		assertThat(meterRegistry.get("cache.size").tag("cache", Owner.class.getName()).gauge()).isNotNull();
+	}
+
+	private CaffeineConfiguration<?, ?> jcache(String cacheName) {
+		javax.cache.Cache<?, ?> cache = jcacheManager.getCache(cacheName);
+		assertThat(cache).as(cacheName).isNotNull();
+		return cache.getConfiguration(CaffeineConfiguration.class);
+	}
+
+	@Test
+	void testOwnerDetailsServedFromSecondLevelCache() {
+		owners.findById(10);
+		visits.findLatestByPet(10, 3);
+		assertThat(statements.count(() -> {
+			Owner owner = owners.findById(10);
+			// touch everything the owner details page renders
+			assertThat(owner.getPets()).isNotEmpty().allSatisfy(pet -> pet.getType().getName());
+			assertThat(visits.findLatestByPet(10, 3)).isNotEmpty();
+			return owner;
+		})).isZero();
+	}
+
+	@Test
+	void testSecondLevelCacheInvalidatedOnSave() {
+		Owner owner = owners.findById(7);
+		assertThat(owners.findById(7).getCity()).isEqualTo("Monona"); // served from cache
+
+		owner.setCity("Madison");
+		owners.save(owner);
+		assertThat(owners.findById(7).getCity()).isEqualTo("Madison");
+
+		int petId = owner.getPets().get(0).getId();
+		assertThat(visits.findLatestByPet(7, 3).get(petId)).isNull();
+		// the visits are loaded lazily, so they are added within a transaction
+		transactions.executeWithoutResult(status -> {
+			Owner managed = owners.findById(7);
+			Visit visit = new Visit();
+			visit.setDescription("nail clipping");
+			managed.addVisit(petId, visit);
+			managed.setCity("Monona");
+			owners.save(managed);
+		});
+		assertThat(owners.findById(7).getCity()).isEqualTo("Monona");
+		assertThat(visits.findLatestByPet(7, 3).get(petId)).extracting(VisitSummary::description)
+			.contains("nail clipping");
+	}
+
+	@Test
+	void testOwnerNameIndexUpdatedOnSave() {
+		assertThat(nameIndex.findByLastNamePrefix("MCT", 10)).extracting(OwnerName::lastName)
+			.containsExactly("McTavish");
+
+		Owner owner = owners.findById(5);
+		owner.setLastName("Mctaggart");
+		owners.save(owner);
+		assertThat(nameIndex.findByLastNamePrefix("mctav", 10)).isEmpty();
+		assertThat(nameIndex.findByLastNamePrefix("mcta", 10)).extracting(OwnerName::id).containsExactly(5);
+
+		// the saved owner has a new version, so is read again before it is changed again
+		owner = owners.findById(5);
+		owner.setLastName("McTavish");
+		owners.save(owner);
+		assertThat(nameIndex.findByLastNamePrefix("mctav", 10)).extracting(OwnerName::id).containsExactly(5);
+	}
+
+	@Test
+	void testOwnerSearchIndexUpdatedOnSave() {
+		assertThat(searchIndex.search("lethargic", 10)).isEmpty();
+
+		transactions.executeWithoutResult(status -> {
+			Owner owner = owners.findById(3);
+			Visit visit = new Visit();
+			visit.setDescription("lethargic after surgery");
+			owner.addVisit(owner.getPets().get(0).getId(), visit);
+			owners.save(owner);
+		});
+		assertThat(searchIndex.search("lethargic", 10)).extracting(hit -> hit.document().id()).containsExactly(3);
+
+		// saved without its visits loaded, the owner keeps them in the index
+		owners.save(owners.findById(3));
+		assertThat(searchIndex.search("lethargic", 10)).extracting(hit -> hit.document().id()).containsExactly(3);
+	}
+
+	@Test
+	void testVisitInsertedWithOneStatement() {
+		Owner owner = owners.findById(4);
+		int petId = owner.getPets().get(0).getId();
+		visits.findLatestByPet(4, 3);
+
+		Visit visit = new Visit();
+		visit.setDescription("microchipped");
+		assertThat(statements.count(() -> visits.insert(petId, visit))).isEqualTo(1);
+
+		// the cached owner stays valid, the cached latest visits do not
+		assertThat(statements.count(() -> owners.findById(4))).isZero();
+		assertThat(visits.findLatestByPet(4, 3).get(petId)).extracting(VisitSummary::description)
+			.contains("microchipped");
+	}
+
+	@Test
+	void testVisitHistoryPages() {
+		int petId = owners.findById(10).getPets().get(0).getId();
+		transactions.executeWithoutResult(status -> {
+			Owner owner = owners.findById(10);
+			for (int i = 0; i < 12; i++) {
+				Visit visit = new Visit();
+				visit.setDate(LocalDate.of(2000, 1, 1).plusDays(i));
+				visit.setDescription("history " + i);
+				owner.addVisit(petId, visit);
+			}
+			owners.save(owner);
+		});
+
+		Map<Integer, Slice<VisitSummary>> latest = visits.findLatestByPet(10, 3);
+		assertThat(latest.get(petId)).hasSize(3);
+		assertThat(latest.get(petId).hasNext()).isTrue();
+
+		Slice<Visit> first = visits.findHistory(10, petId, PageRequest.of(0, 10));
+		Slice<Visit> second = visits.findHistory(10, petId, PageRequest.of(1, 10));
+		assertThat(first).hasSize(10);
+		assertThat(first.hasNext()).isTrue();
+		assertThat(second.hasNext()).isFalse();
+		assertThat(first.getContent().get(0).getDate()).isAfterOrEqualTo(first.getContent().get(9).getDate());
+		assertThat(visits.findHistory(9, petId, PageRequest.of(0, 10))).isEmpty(); // not
+																					// her
+																					// pet
+	}
+
+	@Test
+	void testOwnersImportedInBatches() {
+		StringBuilder csv = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			csv.append("owner,Imported,Batchowner,%d Main St.,Springfield,6085550%03d\n".formatted(i, i));
+			csv.append("pet,Pet%d,2020-01-01,bird\n".formatted(i));
+			csv.append("visit,2021-01-01,\"checkup, all good\"\n");
+		}
+		csv.append("owner,Broken,Batchowner,1 Main St.,Springfield,not a number\n");
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+		RequestEntity<String> request = RequestEntity.post("/owners/import")
+			.contentType(MediaType.parseMediaType("text/csv"))
+			.body(csv.toString());
+
+		statements.reset();
+		OwnerImporter.Report report = template.exchange(request, OwnerImporter.Report.class).getBody();
+		int count = statements.count();
+
+		assertThat(report.owners()).isEqualTo(200);
+		assertThat(report.pets()).isEqualTo(200);
+		assertThat(report.visits()).isEqualTo(200);
+		assertThat(report.rejected()).isEqualTo(1);
+		assertThat(report.errors()).singleElement().asString().startsWith("line 601: owner: telephone");
+		assertThat(report.rowsPerSecond()).isPositive();
+		// ids come from pooled sequences, so the inserts of every flush go out as batches
+		assertThat(count).isLessThanOrEqualTo(60);
+
+		assertThat(owners.countByLastName("Batchowner")).isEqualTo(200);
+		List<OwnerSearchIndex.Hit> hits = searchIndex.search("batchowner", 300);
+		assertThat(hits).hasSize(200);
+		Integer ownerId = hits.get(0).document().id();
+		assertThat(entityManagerFactory.getCache().contains(Owner.class, ownerId)).isFalse();
+		Owner owner = owners.findById(ownerId);
+		assertThat(visits.findHistory(ownerId, owner.getPets().get(0).getId(), PageRequest.of(0, 10)))
+			.extracting(Visit::getDescription)
+			.containsExactly("checkup, all good");
+	}
+
+	@Test
+	void testOwnersImportedFromNdjson() {
+		String ndjson = """
+				{"firstName":"Imported","lastName":"Jsonowner","address":"1 Main St.","city":"Springfield","telephone":"6085551234","pets":[{"name":"Polly","birthDate":"2020-01-01","type":"bird","visits":[{"date":"2021-01-01","description":"wing clipping"}]}]}
+				{"firstName":"Imported","lastName":"Jsonowner","address":"2 Main St.","city":"Springfield","telephone":"6085554321","pets":[{"name":"Nessie","birthDate":"2020-01-01","type":"dragon"}]}
+				""";
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+		RequestEntity<String> request = RequestEntity.post("/owners/import")
+			.contentType(MediaType.parseMediaType("application/x-ndjson"))
+			.body(ndjson);
+
+		OwnerImporter.Report report = template.exchange(request, OwnerImporter.Report.class).getBody();
+
+		assertThat(report.owners()).isEqualTo(1);
+		assertThat(report.visits()).isEqualTo(1);
+		assertThat(report.rejected()).isEqualTo(1);
+		assertThat(report.errors()).contains("line 2: pet Nessie: unknown type dragon");
+		List<OwnerSearchIndex.Hit> hits = searchIndex.search("wing clipping", 10);
+		assertThat(hits).extracting(hit -> hit.document().lastName()).containsExactly("Jsonowner");
+		// no OwnerSaved event is published, yet the owner details must not keep an
+		// earlier tag
+		assertThat(versions.generation(hits.get(0).document().id())).isPositive();
+	}
+
+	@Test
+	void testOwnersExportedWithOneStatement() {
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+
+		statements.reset();
+		ResponseEntity<String> csv = template.getForEntity("/owners/export.csv", String.class);
+		int count = statements.count();
+
+		assertThat(count).isEqualTo(1);
+		assertThat(csv.getHeaders().getContentType().isCompatibleWith(MediaType.parseMediaType("text/csv"))).isTrue();
+		assertThat(csv.getBody()).startsWith("""
+				owner,George,Franklin,110 W. Liberty St.,Madison,6085551023
+				pet,Leo,2010-09-07,cat
+				owner,Betty,Davis,638 Cardinal Ave.,Sun Prairie,6085551749
+				pet,Basil,2012-08-06,hamster
+				""");
+
+		String ndjson = template.getForObject("/owners/export.ndjson", String.class);
+		assertThat(ndjson.lines()).hasSize((int) owners.countOwnersByLastName(""));
+	}
+
+	@Test
+	void testOwnerDetailsNotModifiedWithoutStatements() {
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+		String etag = template.getForEntity("/owners/5", String.class).getHeaders().getETag();
+		RequestEntity<Void> conditional = RequestEntity.get("/owners/5").ifNoneMatch(etag).build();
+
+		statements.reset();
+		ResponseEntity<String> response = template.exchange(conditional, String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+		assertThat(statements.count()).isZero();
+
+		template.postForEntity("/owners/5/pets/6/visits/new", form("date", "2020-01-01", "description", "checkup"),
+				String.class);
+		assertThat(template.exchange(conditional, String.class).getStatusCode()).isEqualTo(HttpStatus.OK);
+	}
+
+	@Test
+	void testOwnerDetailsFragmentCachedUntilVisitAdded() {
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+		RequestEntity<Void> fragment = RequestEntity.get("/owners/4").header("HX-Request", "true").build();
+		String rendered = template.exchange(fragment, String.class).getBody();
+
+		double hits = fragmentGets("ownerDetailsFragment", "hit");
+		assertThat(template.exchange(fragment, String.class).getBody()).isEqualTo(rendered);
+		assertThat(fragmentGets("ownerDetailsFragment", "hit")).isEqualTo(hits + 1);
+
+		template.postForEntity("/owners/4/pets/5/visits/new", form("date", "2021-02-03", "description", "cached"),
+				String.class);
+		double misses = fragmentGets("ownerDetailsFragment", "miss");
+		assertThat(template.exchange(fragment, String.class).getBody()).contains("cached");
+		assertThat(fragmentGets("ownerDetailsFragment", "miss")).isEqualTo(misses + 1);
+	}
+
+	@Test
+	void testVetListFragmentEvictedOnRefresh() {
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+		RequestEntity<Void> fragment = RequestEntity.get("/vets.html?page=2").header("HX-Request", "true").build();
+		template.exchange(fragment, String.class);
+
+		double hits = fragmentGets("vetListFragment", "hit");
+		template.exchange(fragment, String.class);
+		assertThat(fragmentGets("vetListFragment", "hit")).isEqualTo(hits + 1);
+
+		vetDirectory.refresh();
+		assertThat((javax.cache.Cache<?, ?>) cacheManager.getCache("vetListFragment").getNativeCache()).isEmpty();
+	}
+
+	private double fragmentGets(String cacheName, String result) {
+		return meterRegistry.get("cache.gets").tag("cache", cacheName).tag("result", result).functionCounter().count();
+	}
+
+	@Test
+	void testConcurrentOwnerUpdateReportedAsConflict() {
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+		String version = formVersion(template.getForObject("/owners/2/edit", String.class));
+		MultiValueMap<String, String> owner = form("firstName", "Betty", "lastName", "Davis", "address",
+				"638 Cardinal Ave.", "telephone", "6085551749");
+
+		// two terminals opened the form, the first one updates the owner
+		owner.set("city", "Monona");
+		template.postForEntity("/owners/2/edit", withVersion(owner, version), String.class);
+
+		owner.set("city", "Madison");
+		String conflict = template.postForObject("/owners/2/edit", withVersion(owner, version), String.class);
+		assertThat(conflict).contains("id=\"conflict\"");
+		assertThat(owners.findById(2).getCity()).isEqualTo("Monona");
+
+		// the conflict carries the current version, submitting it again overwrites
+		template.postForEntity("/owners/2/edit", withVersion(owner, formVersion(conflict)), String.class);
+		assertThat(owners.findById(2).getCity()).isEqualTo("Madison");
+	}
+
+	private static String formVersion(String html) {
+		Matcher matcher = Pattern.compile("name=\"version\" value=\"(\\d+)\"").matcher(html);
+		assertThat(matcher.find()).isTrue();
+		return matcher.group(1);
+	}
+
+	private static MultiValueMap<String, String> withVersion(MultiValueMap<String, String> form, String version) {
+		MultiValueMap<String, String> versioned = new LinkedMultiValueMap<>(form);
+		versioned.set("version", version);
+		return versioned;
+	}
+
+	@Test
+	void testAssetsServedPrecompressedFromManifest() {
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+		Matcher script = Pattern.compile("src=\"(/assets/webjars/htmx\\.org/dist/htmx\\.min\\.[0-9a-f]{16}\\.js)\"")
+			.matcher(template.getForObject("/", String.class));
+		assertThat(script.find()).isTrue();
+
+		RequestEntity<Void> request = RequestEntity.get(script.group(1))
+			.header(HttpHeaders.ACCEPT_ENCODING, "br")
+			.build();
+		ResponseEntity<byte[]> response = template.exchange(request, byte[].class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+		assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("br");
+		assertThat(response.getHeaders().getCacheControl()).contains("immutable").contains("max-age=31536000");
+	}
+
+	@Test
+	void testVersionlessWebjarsServedWithoutManifest() {
+		// what the templates link to when the asset pipeline did not run
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+		ResponseEntity<String> response = template.getForEntity("/webjars/htmx.org/dist/htmx.min.js", String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+	}
+
+	@Test
+	void testPetUpdateSaved() {
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+		ResponseEntity<String> response = template.postForEntity("/owners/6/pets/7/edit",
+				form("name", "Sammy", "birthDate", "2001-02-03", "type", "cat"), String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.FOUND);
+
+		Pet pet = owners.findById(6).getPet(7);
+		assertThat(pet.getName()).isEqualTo("Sammy");
+		assertThat(pet.getBirthDate()).isEqualTo(LocalDate.of(2001, 2, 3));
+	}
+
+	@Test
+	void testPetFormsQueryNoPetTypes() {
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+		template.getForEntity("/owners/8/pets/new", String.class); // loads the registry
+		QueryStatistics types = entityManagerFactory.unwrap(SessionFactory.class)
+			.getStatistics()
+			.getQueryStatistics("SELECT ptype FROM PetType ptype ORDER BY ptype.name");
+		long executions = types.getExecutionCount();
+
+		template.getForEntity("/owners/8/pets/new", String.class);
+		template.postForEntity("/owners/8/pets/new",
+				form("name", "pet" + uniqueNames.incrementAndGet(), "birthDate", "2020-01-01", "type", "bird"),
+				String.class);
+		template.getForEntity("/owners/8/pets/10/edit", String.class);
+		assertThat(types.getExecutionCount()).isEqualTo(executions);
 	}
 
 	@Test
@@ -60,4 +546,69 @@ class PetClinicIntegrationTests {
 		assertThat(result.getStatusCode()).isEqualTo(HttpStatus.OK);
 	}
 
+	/**
+	 * Upper bounds of the JDBC statements issued per request, both for the full page and
+	 * for the htmx fragment. Raising a bound should be a deliberate decision, as it most
+	 * likely means an N+1 query crept in.
+	 */
+	static Stream<Arguments> statementBounds() {
+		return Stream.of(Arguments.of(HttpMethod.GET, "/", form(), 0), //
+				Arguments.of(HttpMethod.GET, "/owners/find", form(), 0), //
+				Arguments.of(HttpMethod.GET, "/owners/lookup?lastName=Da", form(), 1), //
+				Arguments.of(HttpMethod.GET, "/owners/search?q=dog", form(), 0), //
+				Arguments.of(HttpMethod.GET, "/owners?cursor=", form(), 1), //
+				Arguments.of(HttpMethod.GET, "/owners?cursor=n:4:davis", form(), 1), //
+				Arguments.of(HttpMethod.GET, "/owners?page=2", form(), 2), //
+				Arguments.of(HttpMethod.GET, "/owners?cursor=&lastName=Franklin", form(), 4), //
+				Arguments.of(HttpMethod.GET, "/owners/new", form(), 0), //
+				Arguments.of(HttpMethod.POST, "/owners/new",
+						form("firstName", "Joe", "lastName", "Bloggs", "address", "123 Caramel Street", "city",
+								"London", "telephone", "01316761638"),
+						2), //
+				Arguments.of(HttpMethod.GET, "/owners/6", form(), 3), //
+				Arguments.of(HttpMethod.GET, "/owners/6/edit", form(), 3), //
+				Arguments.of(HttpMethod.POST, "/owners/6/edit",
+						form("firstName", "Jean", "lastName", "Coleman", "address", "105 N. Lake St.", "city", "Monona",
+								"telephone", "6085552654"),
+						2), //
+				Arguments.of(HttpMethod.GET, "/owners/6/pets/new", form(), 9), //
+				Arguments.of(HttpMethod.POST, "/owners/6/pets/new",
+						form("name", "pet" + UNIQUE, "birthDate", "2020-01-01", "type", "dog"), 6), //
+				Arguments.of(HttpMethod.GET, "/owners/6/pets/7/edit", form(), 9), //
+				Arguments.of(HttpMethod.POST, "/owners/6/pets/7/edit",
+						form("id", "7", "name", "Samantha", "birthDate", "2012-09-04", "type", "cat"), 6), //
+				Arguments.of(HttpMethod.GET, "/owners/6/pets/7/visits/new", form(), 2), //
+				Arguments.of(HttpMethod.POST, "/owners/6/pets/7/visits/new",
+						form("date", "2020-01-01", "description", "checkup"), 2), //
+				Arguments.of(HttpMethod.GET, "/vets.html", form(), 7), //
+				Arguments.of(HttpMethod.GET, "/vets.html?page=2", form(), 2), //
+				Arguments.of(HttpMethod.GET, "/vets", form(), 7));
+	}
+
+	@ParameterizedTest
+	@MethodSource("statementBounds")
+	void testStatementCount(HttpMethod method, String path, MultiValueMap<String, String> form, int maxStatements) {
+		RestTemplate template = builder.rootUri("http://localhost:" + port).build();
+		for (boolean hxRequest : new boolean[] { false, true }) {
+			HttpHeaders headers = new HttpHeaders();
+			if (hxRequest) {
+				headers.add("HX-Request", "true");
+			}
+			MultiValueMap<String, String> body = new LinkedMultiValueMap<>();
+			form.forEach((key, values) -> values
+				.forEach(value -> body.add(key, value.replace(UNIQUE, String.valueOf(uniqueNames.incrementAndGet())))));
+			HttpEntity<?> request = new HttpEntity<>(body.isEmpty() ? null : body, headers);
+			int count = statements.count(() -> template.exchange(path, method, request, String.class));
+			assertThat(count).as("%s %s (hx: %s)", method, path, hxRequest).isLessThanOrEqualTo(maxStatements);
+		}
+	}
+
+	private static MultiValueMap<String, String> form(String... keysAndValues) {
+		MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
+		for (int i = 0; i < keysAndValues.length; i += 2) {
+			form.add(keysAndValues[i], keysAndValues[i + 1]);
+		}
+		return form;
+	}
+
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.samples.petclinic.owner.OwnerExportRow;
+import org.springframework.samples.petclinic.vet.Specialty;
+import org.springframework.samples.petclinic.vet.Vet;
+import org.springframework.samples.petclinic.vet.Vets;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Checks the {@link PetClinicRuntimeHints} against what the application loads at runtime.
+ */
+class PetClinicRuntimeHintsTests {
+
+	private final RuntimeHints hints = new RuntimeHints();
+
+	PetClinicRuntimeHintsTests() {
+		new PetClinicRuntimeHints().registerHints(this.hints, getClass().getClassLoader());
+	}
+
+	@Test
+	void shouldRegisterEveryTemplateAndAsset() throws IOException {
+		PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+		for (String location : new String[] { "templates", "assets", "messages", "db/h2" }) {
+			Resource root = resolver.getResource("classpath:" + location + "/");
+			Resource[] resources = resolver.getResources("classpath*:" + location + "/**/*.*");
+			assertThat(resources).as(location).isNotEmpty();
+			for (Resource resource : resources) {
+				String path = location + "/"
+						+ resource.getURI().toString().substring(root.getURI().toString().length());
+				assertThat(RuntimeHintsPredicates.resource().forResource(path)).as(path).accepts(this.hints);
+			}
+		}
+		assertThat(RuntimeHintsPredicates.resource().forResource("assets-manifest.properties")).accepts(this.hints);
+		assertThat(RuntimeHintsPredicates.resource().forResource("reference.conf")).accepts(this.hints);
+	}
+
+	@Test
+	void shouldRegisterJaxbAndJacksonBindings() {
+		for (Class<?> type : new Class<?>[] { Vets.class, Vet.class, Specialty.class }) {
+			assertThat(
+					RuntimeHintsPredicates.reflection().onType(type).withMemberCategory(MemberCategory.DECLARED_FIELDS))
+				.as(type.getName())
+				.accepts(this.hints);
+		}
+		assertThat(RuntimeHintsPredicates.reflection().onMethod(Vet.class, "getSpecialties")).accepts(this.hints);
+		assertThat(RuntimeHintsPredicates.reflection().onMethod(OwnerExportRow.class, "lastName")).accepts(this.hints);
+		assertThat(RuntimeHintsPredicates.reflection()
+			.onType(TypeReference.of("org.springframework.samples.petclinic.owner.OwnerImportFormat$PetRow")))
+			.accepts(this.hints);
+	}
+
+	@Test
+	void shouldRegisterCachedValuesForSerialization() {
+		assertThat(this.hints.serialization().javaSerializationHints())
+			.allSatisfy(hint -> assertThat(ClassUtils.isPresent(hint.getType().getName(), getClass().getClassLoader()))
+				.as(hint.getType().getName())
+				.isTrue());
+		assertThat(RuntimeHintsPredicates.serialization().onType(Vet.class)).accepts(this.hints);
+		assertThat(RuntimeHintsPredicates.serialization()
+			.onType(TypeReference.of("org.springframework.samples.petclinic.system.FragmentCache$Rendered")))
+			.accepts(this.hints);
+		assertThat(RuntimeHintsPredicates.serialization()
+			.onType(TypeReference.of("org.hibernate.cache.spi.entry.StandardCacheEntryImpl"))).accepts(this.hints);
+	}
+
+}
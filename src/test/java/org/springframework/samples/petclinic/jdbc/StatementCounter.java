@@ -0,0 +1,101 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.jdbc;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+
+/**
+ * Counts the JDBC statements executed through the application {@link DataSource}, so
+ * tests can put an upper bound on the statements a request issues and N+1 regressions
+ * fail the build. Import {@link Configuration} into a test to wrap the data source.
+ */
+public class StatementCounter implements QueryExecutionListener {
+
+	private final AtomicInteger count = new AtomicInteger();
+
+	@Override
+	public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+	}
+
+	@Override
+	public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+		this.count.addAndGet(queryInfoList.size());
+	}
+
+	public void reset() {
+		this.count.set(0);
+	}
+
+	public int count() {
+		return this.count.get();
+	}
+
+	/**
+	 * Count the statements executed while running the given action.
+	 * @param action the action to run, typically a request
+	 * @return the number of executed statements
+	 */
+	public <T> int count(Supplier<T> action) {
+		reset();
+		action.get();
+		return count();
+	}
+
+	@TestConfiguration(proxyBeanMethods = false)
+	public static class Configuration {
+
+		@Bean
+		static CountingDataSourcePostProcessor statementCountingDataSourcePostProcessor() {
+			return new CountingDataSourcePostProcessor();
+		}
+
+		@Bean
+		StatementCounter statementCounter(CountingDataSourcePostProcessor postProcessor) {
+			return postProcessor.counter;
+		}
+
+	}
+
+	static class CountingDataSourcePostProcessor implements BeanPostProcessor {
+
+		private final StatementCounter counter = new StatementCounter();
+
+		@Override
+		public Object postProcessAfterInitialization(Object bean, String beanName) {
+			if (bean instanceof DataSource dataSource && !(bean instanceof ProxyDataSource)) {
+				return ProxyDataSourceBuilder.create(dataSource).name(beanName).listener(this.counter).build();
+			}
+			return bean;
+		}
+
+	}
+
+}
@@ -16,28 +16,40 @@
 
 package org.springframework.samples.petclinic.owner;
 
-import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasProperty;
+import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.springframework.samples.petclinic.htmx.HtmxTestUtils.toggleHtmx;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.model;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.view;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 import org.assertj.core.util.Lists;
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.ValueSource;
@@ -45,9 +57,16 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.data.domain.Page;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpHeaders;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.test.context.aot.DisabledInAotMode;
 import org.springframework.test.web.servlet.MockMvc;
 
 /**
@@ -57,6 +76,8 @@ import org.springframework.test.web.servlet.MockMvc;
  * @author Alexandre Grison
  */
 @WebMvcTest(OwnerController.class)
+@Import({ OwnerVersions.class, OwnerReadService.class })
+@DisabledInAotMode // @MockBean is not supported in AOT mode
 class OwnerControllerTests {
 
 	private static final int TEST_OWNER_ID = 1;
@@ -67,6 +88,18 @@ class OwnerControllerTests {
 	@MockBean
 	private OwnerRepository owners;
 
+	@MockBean
+	private OwnerNameIndex nameIndex;
+
+	@MockBean
+	private OwnerSearchIndex searchIndex;
+
+	@MockBean
+	private VisitRepository visits;
+
+	@Autowired
+	private OwnerVersions versions;
+
 	private Owner george() {
 		Owner george = new Owner();
 		george.setId(TEST_OWNER_ID);
@@ -75,6 +108,7 @@ class OwnerControllerTests {
 		george.setAddress("110 W. Liberty St.");
 		george.setCity("Madison");
 		george.setTelephone("6085551023");
+		george.setVersion(2);
 		Pet max = new Pet();
 		PetType dog = new PetType();
 		dog.setName("dog");
@@ -88,12 +122,17 @@ class OwnerControllerTests {
 
 	;
 
+	private OwnerSummary georgeSummary() {
+		return new OwnerSummary(TEST_OWNER_ID, "George", "Franklin", "110 W. Liberty St.", "Madison", "6085551023",
+				"Max");
+	}
+
 	@BeforeEach
 	void setup() {
 
 		Owner george = george();
-		given(this.owners.findByLastName(eq("Franklin"), any(Pageable.class)))
-			.willReturn(new PageImpl<Owner>(Lists.newArrayList(george)));
+		given(this.owners.findSliceByLastName(eq("Franklin"), any(Pageable.class)))
+			.willReturn(new SliceImpl<OwnerSummary>(Lists.newArrayList(georgeSummary())));
 
 		given(this.owners.findAll(any(Pageable.class))).willReturn(new PageImpl<Owner>(Lists.newArrayList(george)));
 
@@ -101,6 +140,9 @@ class OwnerControllerTests {
 		Visit visit = new Visit();
 		visit.setDate(LocalDate.now());
 		george.getPet("Max").getVisits().add(visit);
+		given(this.visits.findLatestByPet(TEST_OWNER_ID, 3))
+			.willReturn(Map.of(1, new SliceImpl<>(List.of(new VisitSummary(1, 1, LocalDate.now(), "rabies shot")),
+					Pageable.ofSize(3), true)));
 
 	}
 
@@ -151,18 +193,23 @@ class OwnerControllerTests {
 	@CsvSource({ "false,owners/ownersList", "true,fragments/owners :: list" })
 	@ParameterizedTest
 	void testProcessFindFormSuccess(boolean hxRequest, String expectedViewName) throws Exception {
-		Page<Owner> tasks = new PageImpl<Owner>(Lists.newArrayList(george(), new Owner()));
-		Mockito.when(this.owners.findByLastName(anyString(), any(Pageable.class))).thenReturn(tasks);
+		Slice<OwnerSummary> tasks = new SliceImpl<OwnerSummary>(
+				Lists.newArrayList(georgeSummary(), new OwnerSummary(2, null, null, null, null, null, null)),
+				PageRequest.of(0, 5), true);
+		Mockito.when(this.owners.findSliceByLastName(anyString(), any(Pageable.class))).thenReturn(tasks);
+		Mockito.when(this.owners.countByLastName("")).thenReturn(12L);
 		mockMvc.perform(toggleHtmx(get("/owners?page=1"), hxRequest))
 			.andExpect(status().isOk())
+			.andExpect(model().attribute("totalItems", 12L))
+			.andExpect(model().attribute("totalPages", 3))
 			.andExpect(view().name(expectedViewName.contains("::") ? null : expectedViewName));
 	}
 
 	@ValueSource(booleans = { false, true })
 	@ParameterizedTest
 	void testProcessFindFormByLastName(boolean hxRequest) throws Exception {
-		Page<Owner> tasks = new PageImpl<Owner>(Lists.newArrayList(george()));
-		Mockito.when(this.owners.findByLastName(eq("Franklin"), any(Pageable.class))).thenReturn(tasks);
+		Slice<OwnerSummary> tasks = new SliceImpl<OwnerSummary>(Lists.newArrayList(georgeSummary()));
+		Mockito.when(this.owners.findSliceByLastName(eq("Franklin"), any(Pageable.class))).thenReturn(tasks);
 		mockMvc.perform(toggleHtmx(get("/owners?page=1"), hxRequest).param("lastName", "Franklin"))
 			.andExpect(status().is3xxRedirection())
 			.andExpect(view().name(!hxRequest ? "redirect:/owners/" + TEST_OWNER_ID : null));
@@ -171,8 +218,8 @@ class OwnerControllerTests {
 	@CsvSource({ "false,owners/findOwners", "true,fragments/owners :: find-form" })
 	@ParameterizedTest
 	void testProcessFindFormNoOwnersFound(boolean hxRequest, String expectedViewName) throws Exception {
-		Page<Owner> tasks = new PageImpl<Owner>(Lists.newArrayList());
-		Mockito.when(this.owners.findByLastName(eq("Unknown Surname"), any(Pageable.class))).thenReturn(tasks);
+		Slice<OwnerSummary> tasks = new SliceImpl<OwnerSummary>(Lists.newArrayList());
+		Mockito.when(this.owners.findSliceByLastName(eq("Unknown Surname"), any(Pageable.class))).thenReturn(tasks);
 		mockMvc.perform(toggleHtmx(get("/owners?page=1"), hxRequest).param("lastName", "Unknown Surname"))
 			.andExpect(status().isOk())
 			.andExpect(model().attributeHasFieldErrors("owner", "lastName"))
@@ -181,6 +228,91 @@ class OwnerControllerTests {
 
 	}
 
+	@Test
+	void testLookupOwners() throws Exception {
+		OwnerName george = new OwnerName(TEST_OWNER_ID, "George", "Franklin");
+		given(this.nameIndex.findByLastNamePrefix(eq("fr"), anyInt())).willReturn(List.of(george));
+		mockMvc.perform(toggleHtmx(get("/owners/lookup"), true).param("lastName", "fr"))
+			.andExpect(status().isOk())
+			.andExpect(model().attribute("matchingOwners", contains(george)));
+	}
+
+	@Test
+	void testLookupOwnersWithoutHtmx() throws Exception {
+		mockMvc.perform(get("/owners/lookup").param("lastName", "fr"))
+			.andExpect(status().is3xxRedirection())
+			.andExpect(redirectedUrl("/owners?cursor=&lastName=fr"));
+	}
+
+	@CsvSource({ "false,owners/searchOwners", "true,fragments/owners :: search-results" })
+	@ParameterizedTest
+	void testSearchOwners(boolean hxRequest, String expectedViewName) throws Exception {
+		List<OwnerSearchIndex.Hit> hits = List.of(new OwnerSearchIndex.Hit(OwnerSearchIndex.Document.of(george()), 1));
+		given(this.searchIndex.search(eq("max"), anyInt())).willReturn(hits);
+		mockMvc.perform(toggleHtmx(get("/owners/search"), hxRequest).param("q", "max"))
+			.andExpect(status().isOk())
+			.andExpect(model().attribute("query", "max"))
+			.andExpect(model().attribute("hits", hits))
+			.andExpect(view().name(expectedViewName));
+	}
+
+	@ValueSource(booleans = { false, true })
+	@ParameterizedTest
+	void testSearchOwnersWithoutQuery(boolean hxRequest) throws Exception {
+		mockMvc.perform(toggleHtmx(get("/owners/search"), hxRequest))
+			.andExpect(status().isOk())
+			.andExpect(model().attributeDoesNotExist("hits"));
+	}
+
+	@CsvSource({ "false,owners/ownersList", "true,fragments/owners :: list" })
+	@ParameterizedTest
+	void testProcessScrollFormSuccess(boolean hxRequest, String expectedViewName) throws Exception {
+		List<OwnerSummary> tasks = Lists.newArrayList(georgeSummary(), georgeSummary(), georgeSummary(),
+				georgeSummary(), georgeSummary(), georgeSummary());
+		Mockito.when(this.owners.findByLastNameAfter(eq(""), eq(""), eq(0), any(Limit.class))).thenReturn(tasks);
+		mockMvc.perform(toggleHtmx(get("/owners?cursor="), hxRequest))
+			.andExpect(status().isOk())
+			.andExpect(model().attribute("listOwners", hasSize(5)))
+			.andExpect(model().attribute("previousCursor", nullValue()))
+			.andExpect(model().attribute("nextCursor", "n:1:franklin"))
+			.andExpect(view().name(expectedViewName.contains("::") ? null : expectedViewName));
+	}
+
+	@ValueSource(booleans = { false, true })
+	@ParameterizedTest
+	void testProcessScrollFormBackward(boolean hxRequest) throws Exception {
+		OwnerSummary betty = new OwnerSummary(2, "Betty", "Davis", "638 Cardinal Ave.", "Sun Prairie", "6085551749",
+				"Basil");
+		Mockito.when(this.owners.findByLastNameBefore(eq(""), eq("franklin"), eq(1), any(Limit.class)))
+			.thenReturn(Lists.newArrayList(georgeSummary(), betty));
+		mockMvc.perform(toggleHtmx(get("/owners?cursor=p:1:franklin"), hxRequest))
+			.andExpect(status().isOk())
+			.andExpect(model().attribute("listOwners", contains(betty, georgeSummary())))
+			.andExpect(model().attribute("previousCursor", nullValue()))
+			.andExpect(model().attribute("nextCursor", "n:1:franklin"));
+	}
+
+	@ValueSource(booleans = { false, true })
+	@ParameterizedTest
+	void testProcessScrollFormByLastName(boolean hxRequest) throws Exception {
+		Mockito.when(this.owners.findByLastNameAfter(eq("Franklin"), eq(""), eq(0), any(Limit.class)))
+			.thenReturn(Lists.newArrayList(georgeSummary()));
+		mockMvc.perform(toggleHtmx(get("/owners?cursor="), hxRequest).param("lastName", "Franklin"))
+			.andExpect(status().is3xxRedirection())
+			.andExpect(view().name(!hxRequest ? "redirect:/owners/" + TEST_OWNER_ID : null));
+	}
+
+	@CsvSource({ "false,owners/findOwners", "true,fragments/owners :: find-form" })
+	@ParameterizedTest
+	void testProcessScrollFormNoOwnersFound(boolean hxRequest, String expectedViewName) throws Exception {
+		Mockito.when(this.owners.findByLastNameAfter(eq("Unknown Surname"), eq(""), eq(0), any(Limit.class)))
+			.thenReturn(Lists.newArrayList());
+		mockMvc.perform(toggleHtmx(get("/owners?cursor="), hxRequest).param("lastName", "Unknown Surname"))
+			.andExpect(status().isOk())
+			.andExpect(model().attributeHasFieldErrorCode("owner", "lastName", "notFound"))
+			.andExpect(view().name(expectedViewName.contains("::") ? null : expectedViewName));
+	}
+
 	@CsvSource({ "false,owners/createOrUpdateOwnerForm", "true,fragments/owners :: edit" })
 	@ParameterizedTest
 	void testInitUpdateOwnerForm(boolean hxRequest, String expectedViewName) throws Exception {
@@ -231,36 +363,97 @@ class OwnerControllerTests {
 			.andExpect(view().name(expectedViewName));
 	}
 
+	@ValueSource(booleans = { false, true })
+	@ParameterizedTest
+	void testProcessUpdateOwnerFormCurrentVersionSuccess(boolean hxRequest) throws Exception {
+		mockMvc
+			.perform(toggleHtmx(post("/owners/{ownerId}/edit", TEST_OWNER_ID), hxRequest).param("version", "2")
+				.param("city", "London"))
+			.andExpect(status().is3xxRedirection())
+			.andExpect(view().name("redirect:/owners/{ownerId}"));
+		verify(this.owners).save(any());
+	}
+
+	@CsvSource({ "false,owners/createOrUpdateOwnerForm", "true,fragments/owners :: edit" })
+	@ParameterizedTest
+	void testProcessUpdateOwnerFormConflict(boolean hxRequest, String expectedViewName) throws Exception {
+		mockMvc
+			.perform(toggleHtmx(post("/owners/{ownerId}/edit", TEST_OWNER_ID), hxRequest).param("version", "1")
+				.param("city", "London"))
+			.andExpect(status().isOk())
+			.andExpect(model().attributeHasErrors("owner"))
+			.andExpect(model().attribute("owner", hasProperty("city", is("London"))))
+			.andExpect(view().name(expectedViewName))
+			.andExpect(content().string(containsString("id=\"conflict\"")))
+			.andExpect(content().string(containsString("name=\"version\" value=\"2\"")));
+		verify(this.owners, never()).save(any());
+	}
+
+	@CsvSource({ "false,owners/createOrUpdateOwnerForm", "true,fragments/owners :: edit" })
+	@ParameterizedTest
+	void testProcessUpdateOwnerFormConflictOnSave(boolean hxRequest, String expectedViewName) throws Exception {
+		willThrow(new OptimisticLockingFailureException("stale")).given(this.owners).save(any());
+		mockMvc
+			.perform(toggleHtmx(post("/owners/{ownerId}/edit", TEST_OWNER_ID), hxRequest).param("version", "2")
+				.param("city", "London"))
+			.andExpect(status().isOk())
+			.andExpect(model().attributeHasErrors("owner"))
+			.andExpect(view().name(expectedViewName))
+			.andExpect(content().string(containsString("id=\"conflict\"")));
+	}
+
 	@CsvSource({ "false,owners/ownerDetails", "true,fragments/owners :: details" })
 	@ParameterizedTest
 	void testShowOwner(boolean hxRequest, String expectedViewName) throws Exception {
 		mockMvc.perform(toggleHtmx(get("/owners/{ownerId}", TEST_OWNER_ID), hxRequest))
 			.andExpect(status().isOk())
-			.andExpect(model().attribute("owner", hasProperty("lastName", is("Franklin"))))
-			.andExpect(model().attribute("owner", hasProperty("firstName", is("George"))))
-			.andExpect(model().attribute("owner", hasProperty("address", is("110 W. Liberty St."))))
-			.andExpect(model().attribute("owner", hasProperty("city", is("Madison"))))
-			.andExpect(model().attribute("owner", hasProperty("telephone", is("6085551023"))))
-			.andExpect(model().attribute("owner", hasProperty("pets", not(empty()))))
-			.andExpect(model().attribute("owner", hasProperty("pets", new BaseMatcher<List<Pet>>() {
+			.andExpect(model().attribute("owner", new BaseMatcher<OwnerDetails>() {
 
 				@Override
 				public boolean matches(Object item) {
-					@SuppressWarnings("unchecked")
-					List<Pet> pets = (List<Pet>) item;
-					Pet pet = pets.get(0);
-					if (pet.getVisits().isEmpty()) {
+					OwnerDetails owner = (OwnerDetails) item;
+					if (!"George".equals(owner.firstName()) || !"Franklin".equals(owner.lastName())
+							|| !"110 W. Liberty St.".equals(owner.address()) || !"Madison".equals(owner.city())
+							|| !"6085551023".equals(owner.telephone()) || owner.pets().size() != 1) {
 						return false;
 					}
-					return true;
+					PetDetails max = owner.pets().get(0);
+					return "Max".equals(max.name()) && "dog".equals(max.type()) && max.visits().hasContent()
+							&& max.visits().hasNext();
 				}
 
 				@Override
 				public void describeTo(Description description) {
-					description.appendText("Max did not have any visits");
+					description.appendText("George Franklin with Max and the latest visits of Max");
 				}
-			})))
+			}))
+			.andExpect(content().string(containsString("rabies shot")))
+			.andExpect(content().string(containsString("Show older visits")))
 			.andExpect(view().name(expectedViewName));
 	}
 
+	@ValueSource(booleans = { false, true })
+	@ParameterizedTest
+	void testShowOwnerNotModified(boolean hxRequest) throws Exception {
+		String etag = mockMvc.perform(toggleHtmx(get("/owners/{ownerId}", TEST_OWNER_ID), hxRequest))
+			.andExpect(status().isOk())
+			.andReturn()
+			.getResponse()
+			.getHeader(HttpHeaders.ETAG);
+		Mockito.clearInvocations(this.owners, this.visits);
+
+		mockMvc
+			.perform(toggleHtmx(get("/owners/{ownerId}", TEST_OWNER_ID).header(HttpHeaders.IF_NONE_MATCH, etag),
+					hxRequest))
+			.andExpect(status().isNotModified());
+		Mockito.verifyNoInteractions(this.owners, this.visits);
+
+		this.versions.changed(TEST_OWNER_ID);
+		mockMvc
+			.perform(toggleHtmx(get("/owners/{ownerId}", TEST_OWNER_ID).header(HttpHeaders.IF_NONE_MATCH, etag),
+					hxRequest))
+			.andExpect(status().isOk())
+			.andExpect(header().string(HttpHeaders.ETAG, not(etag)));
+	}
+
 }
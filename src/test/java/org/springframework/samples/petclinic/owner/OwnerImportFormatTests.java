@@ -0,0 +1,146 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.samples.petclinic.owner.OwnerImportFormat.Entry;
+import org.springframework.samples.petclinic.owner.OwnerImportFormat.OwnerRow;
+import org.springframework.samples.petclinic.owner.OwnerImportFormat.PetRow;
+import org.springframework.samples.petclinic.owner.OwnerImportFormat.VisitRow;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Test class for {@link OwnerImportFormat}
+ */
+class OwnerImportFormatTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+	@Test
+	void shouldGroupCsvRowsByOwner() {
+		List<Entry> entries = read(OwnerImportFormat.CSV, """
+				# owners, their pets and visits
+				owner,George,Franklin,"110 W. Liberty St., Apt ""B""\",Madison,6085551023
+				pet,Leo,2010-09-07,cat
+				visit,2013-01-01,rabies shot
+				visit,2013-01-02,"checkup, all good"
+				pet,Max,,dog
+
+				owner,Betty,Davis,638 Cardinal Ave.,Sun Prairie,6085551749
+				""");
+
+		assertThat(entries)
+			.containsExactly(
+					new Entry(
+							2, new OwnerRow("George", "Franklin", "110 W. Liberty St., Apt \"B\"", "Madison",
+									"6085551023", List.of(
+											new PetRow("Leo", LocalDate.of(2010, 9, 7), "cat",
+													List.of(new VisitRow(LocalDate.of(2013, 1, 1), "rabies shot"),
+															new VisitRow(LocalDate.of(2013, 1, 2),
+																	"checkup, all good"))),
+											new PetRow("Max", null, "dog", List.of()))),
+							null),
+					new Entry(8,
+							new OwnerRow("Betty", "Davis", "638 Cardinal Ave.", "Sun Prairie", "6085551749", List.of()),
+							null));
+	}
+
+	@Test
+	void shouldRejectCsvOwnerWithUnreadableRows() {
+		List<Entry> entries = read(OwnerImportFormat.CSV, """
+				pet,Leo,2010-09-07,cat
+				owner,George,Franklin,110 W. Liberty St.,Madison,6085551023
+				visit,2013-01-01,rabies shot
+				owner,Betty,Davis,638 Cardinal Ave.,Sun Prairie,6085551749
+				pet,Basil,2012-02-30,hamster
+				owner,Eduardo,Rodriquez,2693 Commerce St.,McFarland,6085558763
+				""");
+
+		assertThat(entries).extracting(Entry::line).containsExactly(1, 3, 5, 6);
+		assertThat(entries).extracting(entry -> entry.error() != null).containsExactly(true, true, true, false);
+		assertThat(entries.get(3).owner().lastName()).isEqualTo("Rodriquez");
+	}
+
+	@Test
+	void shouldReadCsvFieldsSpanningLines() {
+		List<Entry> entries = read(OwnerImportFormat.CSV, """
+				owner,George,Franklin,110 W. Liberty St.,Madison,6085551023
+				pet,Leo,2010-09-07,cat
+				visit,2013-01-01,"limping
+
+				# left leg"
+				owner,Betty,Davis,638 Cardinal Ave.,Sun Prairie,6085551749
+				pet,Basil,2012-02-30,hamster
+				""");
+
+		assertThat(entries).extracting(Entry::line).containsExactly(1, 7);
+		assertThat(entries.get(0).owner().pets().get(0).visits()).extracting(VisitRow::description)
+			.containsExactly("limping\n\n# left leg");
+		assertThat(entries.get(1).error()).isNotNull();
+	}
+
+	@Test
+	void shouldReadOneNdjsonOwnerPerLine() {
+		List<Entry> entries = read(OwnerImportFormat.NDJSON,
+				"""
+						{"firstName":"George","lastName":"Franklin","address":"110 W. Liberty St.","city":"Madison","telephone":"6085551023","pets":[{"name":"Leo","birthDate":"2010-09-07","type":"cat","visits":[{"date":"2013-01-01","description":"rabies shot"}]}]}
+						{"firstName":"Betty",
+						{"firstName":"Betty","lastName":"Davis","address":"638 Cardinal Ave.","city":"Sun Prairie","telephone":"6085551749"}
+						""");
+
+		assertThat(entries).hasSize(3);
+		assertThat(entries.get(0).owner().pets()).singleElement()
+			.satisfies(pet -> assertThat(pet.visits())
+				.containsExactly(new VisitRow(LocalDate.of(2013, 1, 1), "rabies shot")));
+		assertThat(entries.get(1).line()).isEqualTo(2);
+		assertThat(entries.get(1).error()).isNotNull();
+		assertThat(entries.get(2).owner().pets()).isEmpty();
+	}
+
+	@Test
+	void shouldReadWhatWasWritten() throws IOException {
+		OwnerRow owner = new OwnerRow(
+				"George", "Franklin", "110 W. Liberty St., Apt \"B\"", "Madison", "6085551023", List.of(
+						new PetRow("Leo", LocalDate.of(2010, 9, 7), "cat",
+								List.of(new VisitRow(LocalDate.of(2013, 1, 1), "checkup, all good"),
+										new VisitRow(LocalDate.of(2013, 1, 2), "limping\n\n# left leg\nsince Monday"))),
+						new PetRow("Max", null, "dog", List.of())));
+		for (OwnerImportFormat format : OwnerImportFormat.values()) {
+			StringWriter writer = new StringWriter();
+			format.write(owner, writer, this.objectMapper);
+
+			assertThat(read(format, writer.toString())).as(format.name()).containsExactly(new Entry(1, owner, null));
+		}
+	}
+
+	private List<Entry> read(OwnerImportFormat format, String input) {
+		List<Entry> entries = new ArrayList<>();
+		format.read(new BufferedReader(new StringReader(input)), this.objectMapper).forEachRemaining(entries::add);
+		return entries;
+	}
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+/**
+ * Test class for {@link OwnerNameIndex}
+ */
+@ExtendWith(MockitoExtension.class)
+class OwnerNameIndexTests {
+
+	@Mock
+	private OwnerRepository owners;
+
+	private OwnerNameIndex index;
+
+	@BeforeEach
+	void setup() {
+		given(this.owners.findNames()).willReturn(List.of(new OwnerName(4, "Harold", "Davis"),
+				new OwnerName(1, "George", "Franklin"), new OwnerName(2, "Betty", "Davis"),
+				new OwnerName(10, "Carlos", "Estaban"), new OwnerName(8, "Maria", "Escobito")));
+		this.index = new OwnerNameIndex(this.owners);
+		this.index.load();
+	}
+
+	@Test
+	void shouldFindByLastNamePrefixIgnoringCase() {
+		assertThat(this.index.findByLastNamePrefix("dAV", 10)).extracting(OwnerName::id).containsExactly(2, 4);
+		assertThat(this.index.findByLastNamePrefix("es", 10)).extracting(OwnerName::lastName)
+			.containsExactly("Escobito", "Estaban");
+		assertThat(this.index.findByLastNamePrefix("", 10)).hasSize(5);
+		assertThat(this.index.findByLastNamePrefix("Unknown", 10)).isEmpty();
+	}
+
+	@Test
+	void shouldLimitResults() {
+		assertThat(this.index.findByLastNamePrefix("", 3)).extracting(OwnerName::id).containsExactly(2, 4, 8);
+	}
+
+	@Test
+	void shouldMoveRenamedOwner() {
+		this.index.put(new OwnerName(4, "Harold", "Franklin"));
+		assertThat(this.index.size()).isEqualTo(5);
+		assertThat(this.index.findByLastNamePrefix("davis", 10)).extracting(OwnerName::id).containsExactly(2);
+		assertThat(this.index.findByLastNamePrefix("franklin", 10)).extracting(OwnerName::id).containsExactly(1, 4);
+	}
+
+	@Test
+	void shouldRemoveOwner() {
+		this.index.remove(2);
+		this.index.remove(99);
+		assertThat(this.index.findByLastNamePrefix("davis", 10)).extracting(OwnerName::id).containsExactly(4);
+	}
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.samples.petclinic.owner.OwnerSearchIndex.Hit;
+
+/**
+ * Test class for {@link OwnerSearchIndex}
+ */
+@ExtendWith(MockitoExtension.class)
+class OwnerSearchIndexTests {
+
+	@Mock
+	private OwnerRepository owners;
+
+	private OwnerSearchIndex index;
+
+	@BeforeEach
+	void setup() {
+		given(this.owners.streamAll())
+			.willReturn(rows(owner(1, "George", "Franklin", "Madison", pet("Leo", "cat", "rabies shot")),
+					owner(2, "Betty", "Davis", "Sun Prairie", pet("Basil", "hamster", "neutered")),
+					owner(3, "Eduardo", "Rodriquez", "McFarland", pet("Rosy", "dog", "limping on the left leg"),
+							pet("Jewel", "dog")),
+					owner(4, "Harold", "Davis", "Windsor", pet("Iggy", "lizard", "limp tail"))));
+		this.index = new OwnerSearchIndex(this.owners);
+		this.index.load();
+	}
+
+	@Test
+	void shouldFindOwnersByVisitDescription() {
+		assertThat(this.index.search("neutered", 10)).extracting(hit -> hit.document().id()).containsExactly(2);
+	}
+
+	@Test
+	void shouldRankOwnersMatchingMoreTerms() {
+		List<Hit> hits = this.index.search("that dog with the limp", 10);
+		assertThat(hits).extracting(hit -> hit.document().id()).containsExactly(3, 4);
+		assertThat(hits.get(0).score()).isGreaterThan(hits.get(1).score());
+	}
+
+	@Test
+	void shouldMatchLastTermAsPrefix() {
+		assertThat(this.index.search("mad", 10)).extracting(hit -> hit.document().id()).containsExactly(1);
+		assertThat(this.index.search("dav", 10)).extracting(hit -> hit.document().id()).containsExactly(2, 4);
+		assertThat(this.index.search("", 10)).isEmpty();
+	}
+
+	@Test
+	void shouldReindexSavedOwner() {
+		Owner owner = owner(2, "Betty", "Davis", "Sun Prairie", pet("Basil", "hamster", "neutered", "limping"));
+		this.index.onOwnerSaved(new OwnerSaved(owner));
+		assertThat(this.index.size()).isEqualTo(4);
+		// equal scores are ordered by last name
+		assertThat(this.index.search("limping", 10)).extracting(hit -> hit.document().id()).containsExactly(2, 3);
+
+		owner.setCity("Monona");
+		this.index.onOwnerSaved(new OwnerSaved(owner));
+		assertThat(this.index.search("prairie", 10)).isEmpty();
+		assertThat(this.index.search("monona", 10)).extracting(hit -> hit.document().id()).containsExactly(2);
+	}
+
+	/**
+	 * The rows {@link OwnerRepository#streamAll()} returns for the given owners.
+	 */
+	private Stream<OwnerExportRow> rows(Owner... owners) {
+		List<OwnerExportRow> rows = new ArrayList<>();
+		for (Owner owner : owners) {
+			int petId = owner.getId() * 10;
+			for (Pet pet : owner.getPets()) {
+				petId++;
+				if (pet.getVisits().isEmpty()) {
+					rows.add(row(owner, petId, pet, null, 0));
+				}
+				int visitId = petId * 10;
+				for (Visit visit : pet.getVisits()) {
+					rows.add(row(owner, petId, pet, visit, ++visitId));
+				}
+			}
+		}
+		return rows.stream();
+	}
+
+	private OwnerExportRow row(Owner owner, int petId, Pet pet, Visit visit, int visitId) {
+		return new OwnerExportRow(owner.getId(), owner.getFirstName(), owner.getLastName(), owner.getAddress(),
+				owner.getCity(), owner.getTelephone(), petId, pet.getName(), pet.getBirthDate(),
+				pet.getType().getName(), (visit != null) ? visitId : null, (visit != null) ? visit.getDate() : null,
+				(visit != null) ? visit.getDescription() : null);
+	}
+
+	private Owner owner(int id, String firstName, String lastName, String city, Pet... pets) {
+		Owner owner = new Owner();
+		owner.setId(id);
+		owner.setFirstName(firstName);
+		owner.setLastName(lastName);
+		owner.setAddress("2693 Commerce St.");
+		owner.setCity(city);
+		owner.setTelephone("608555" + id + id + id + id);
+		for (Pet pet : pets) {
+			owner.getPets().add(pet);
+		}
+		return owner;
+	}
+
+	private Pet pet(String name, String type, String... visits) {
+		Pet pet = new Pet();
+		pet.setName(name);
+		PetType petType = new PetType();
+		petType.setName(type);
+		pet.setType(petType);
+		for (String description : visits) {
+			Visit visit = new Visit();
+			visit.setDate(LocalDate.now());
+			visit.setDescription(description);
+			pet.addVisit(visit);
+		}
+		return pet;
+	}
+
+}
@@ -16,6 +16,8 @@
 
 package org.springframework.samples.petclinic.owner;
 
+import java.util.List;
+
 import org.assertj.core.util.Lists;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -27,9 +29,16 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.FilterType;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.test.context.aot.DisabledInAotMode;
 import org.springframework.test.web.servlet.MockMvc;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.springframework.samples.petclinic.htmx.HtmxTestUtils.toggleHtmx;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -42,7 +51,9 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
  * @author Alexandre Grison
  */
 @WebMvcTest(value = PetController.class,
-		includeFilters = @ComponentScan.Filter(value = PetTypeFormatter.class, type = FilterType.ASSIGNABLE_TYPE))
+		includeFilters = @ComponentScan.Filter(value = { PetTypeFormatter.class, PetTypeRegistry.class },
+				type = FilterType.ASSIGNABLE_TYPE))
+@DisabledInAotMode // @MockBean is not supported in AOT mode
 class PetControllerTests {
 
 	private static final int TEST_OWNER_ID = 1;
@@ -55,6 +66,9 @@ class PetControllerTests {
 	@MockBean
 	private OwnerRepository owners;
 
+	@MockBean
+	private VisitRepository visits;
+
 	@BeforeEach
 	void setup() {
 		PetType cat = new PetType();
@@ -62,9 +76,11 @@ class PetControllerTests {
 		cat.setName("hamster");
 		given(this.owners.findPetTypes()).willReturn(Lists.newArrayList(cat));
 		Owner owner = new Owner();
+		owner.setId(TEST_OWNER_ID);
 		Pet pet = new Pet();
 		owner.addPet(pet);
 		pet.setId(TEST_PET_ID);
+		pet.setVersion(3);
 		given(this.owners.findById(TEST_OWNER_ID)).willReturn(owner);
 	}
 
@@ -136,4 +152,40 @@ class PetControllerTests {
 			.andExpect(view().name(expectedView));
 	}
 
+	@CsvSource({ "false,pets/createOrUpdatePetForm", "true,fragments/pets :: edit" })
+	@ParameterizedTest
+	void testProcessUpdateFormConflict(boolean hxRequest, String expectedView) throws Exception {
+		mockMvc
+			.perform(toggleHtmx(post("/owners/{ownerId}/pets/{petId}/edit", TEST_OWNER_ID, TEST_PET_ID), hxRequest)
+				.param("version", "2")
+				.param("name", "Betty")
+				.param("type", "hamster")
+				.param("birthDate", "2015-02-12"))
+			.andExpect(status().isOk())
+			.andExpect(model().attributeHasErrors("pet"))
+			.andExpect(view().name(expectedView))
+			.andExpect(content().string(containsString("id=\"conflict\"")))
+			.andExpect(content().string(containsString("name=\"version\" value=\"3\"")));
+		verify(this.owners, never()).save(any());
+	}
+
+	@CsvSource({ "false,pets/visitHistory", "true,fragments/pets :: visit-history-page" })
+	@ParameterizedTest
+	void testShowVisitHistory(boolean hxRequest, String expectedView) throws Exception {
+		Visit visit = new Visit();
+		visit.setDescription("rabies shot");
+		given(this.visits.findHistory(TEST_OWNER_ID, TEST_PET_ID, PageRequest.of(1, 10)))
+			.willReturn(new SliceImpl<>(List.of(visit), PageRequest.of(1, 10), true));
+		mockMvc
+			.perform(toggleHtmx(get("/owners/{ownerId}/pets/{petId}/visits", TEST_OWNER_ID, TEST_PET_ID), hxRequest)
+				.param("page", "2"))
+			.andExpect(status().isOk())
+			.andExpect(model().attribute("currentPage", 2))
+			.andExpect(content().string(containsString("rabies shot")))
+			// the next page is loaded once the end of the history is revealed
+			.andExpect(content().string(containsString("hx-trigger=\"revealed\"")))
+			.andExpect(content().string(containsString("/owners/1/pets/1/visits?page=3")))
+			.andExpect(view().name(expectedView));
+	}
+
 }
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+/**
+ * Test class for {@link PetTypeRegistry}
+ */
+@ExtendWith(MockitoExtension.class)
+class PetTypeRegistryTests {
+
+	@Mock
+	private OwnerRepository owners;
+
+	private PetTypeRegistry registry;
+
+	@BeforeEach
+	void setup() {
+		given(this.owners.findPetTypes()).willReturn(List.of(petType("bird"), petType("cat"), petType("dog")));
+		this.registry = new PetTypeRegistry(this.owners);
+	}
+
+	@Test
+	void shouldLoadTypesOnce() {
+		assertThat(this.registry.findAll()).extracting(PetType::getName).containsExactly("bird", "cat", "dog");
+		assertThat(this.registry.findByName("cat").getName()).isEqualTo("cat");
+		assertThat(this.registry.findByName("Fish")).isNull();
+		verify(this.owners, times(1)).findPetTypes();
+	}
+
+	@Test
+	void shouldHoldImmutableTypes() {
+		assertThatThrownBy(() -> this.registry.findAll().add(petType("fish")))
+			.isInstanceOf(UnsupportedOperationException.class);
+	}
+
+	@Test
+	void shouldReloadTypesOnceInvalidated() {
+		this.registry.findAll();
+		given(this.owners.findPetTypes()).willReturn(List.of(petType("cat"), petType("fish")));
+		this.registry.invalidate();
+		assertThat(this.registry.findByName("fish")).isNotNull();
+		assertThat(this.registry.findByName("dog")).isNull();
+		verify(this.owners, times(2)).findPetTypes();
+	}
+
+	@Test
+	void shouldNotPublishTypesLoadedBeforeInvalidation() throws Exception {
+		Thread invalidation = new Thread(() -> this.registry.invalidate());
+		given(this.owners.findPetTypes()).willAnswer(invocation -> {
+			// a type changes and commits while the types are being read
+			invalidation.start();
+			while (invalidation.getState() != Thread.State.WAITING
+					&& invalidation.getState() != Thread.State.TERMINATED) {
+				Thread.onSpinWait();
+			}
+			return List.of(petType("cat"));
+		}).willReturn(List.of(petType("cat"), petType("fish")));
+		assertThat(this.registry.findAll()).extracting(PetType::getName).containsExactly("cat");
+		invalidation.join();
+		assertThat(this.registry.findByName("fish")).isNotNull();
+		verify(this.owners, times(2)).findPetTypes();
+	}
+
+	private PetType petType(String name) {
+		PetType type = new PetType();
+		type.setName(name);
+		return type;
+	}
+
+}
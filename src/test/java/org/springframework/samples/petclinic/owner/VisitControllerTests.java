@@ -16,6 +16,9 @@
 
 package org.springframework.samples.petclinic.owner;
 
+import java.time.LocalDate;
+import java.util.List;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
@@ -23,9 +26,17 @@ import org.junit.jupiter.params.provider.ValueSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.aot.DisabledInAotMode;
 import org.springframework.test.web.servlet.MockMvc;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.springframework.samples.petclinic.htmx.HtmxTestUtils.toggleHtmx;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -38,6 +49,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
  * @author Alexandre Grison
  */
 @WebMvcTest(VisitController.class)
+@Import(OwnerReadService.class)
+@DisabledInAotMode // @MockBean is not supported in AOT mode
 class VisitControllerTests {
 
 	private static final int TEST_OWNER_ID = 1;
@@ -50,13 +63,20 @@ class VisitControllerTests {
 	@MockBean
 	private OwnerRepository owners;
 
+	@MockBean
+	private VisitRepository visits;
+
 	@BeforeEach
 	void init() {
 		Owner owner = new Owner();
+		owner.setId(TEST_OWNER_ID);
 		Pet pet = new Pet();
 		owner.addPet(pet);
 		pet.setId(TEST_PET_ID);
+		pet.setVersion(1);
 		given(this.owners.findById(TEST_OWNER_ID)).willReturn(owner);
+		given(this.visits.findByPet(TEST_OWNER_ID, TEST_PET_ID))
+			.willReturn(List.of(new VisitSummary(TEST_PET_ID, 1, LocalDate.of(2013, 1, 1), "rabies shot")));
 	}
 
 	@CsvSource({ "false,pets/createOrUpdateVisitForm", "true,fragments/pets :: visits" })
@@ -66,7 +86,10 @@ class VisitControllerTests {
 			.perform(
 					toggleHtmx(get("/owners/{ownerId}/pets/{petId}/visits/new", TEST_OWNER_ID, TEST_PET_ID), hxRequest))
 			.andExpect(status().isOk())
-			.andExpect(view().name(expectedView));
+			.andExpect(view().name(expectedView))
+			.andExpect(content().string(containsString("rabies shot")));
+		// the owner is loaded once, the pet and its visits are read from it
+		verify(this.owners).findById(TEST_OWNER_ID);
 	}
 
 	@ValueSource(booleans = { false, true })
@@ -79,6 +102,9 @@ class VisitControllerTests {
 						.param("description", "Visit Description"))
 			.andExpect(status().is3xxRedirection())
 			.andExpect(view().name("redirect:/owners/{ownerId}"));
+		verify(this.visits).insert(eq(TEST_PET_ID),
+				argThat(visit -> "Visit Description".equals(visit.getDescription())));
+		verify(this.owners, never()).save(any());
 	}
 
 	@CsvSource({ "false,pets/createOrUpdateVisitForm", "true,fragments/pets :: visits" })
@@ -93,4 +119,20 @@ class VisitControllerTests {
 			.andExpect(view().name(expectedView));
 	}
 
+	@CsvSource({ "false,pets/createOrUpdateVisitForm", "true,fragments/pets :: visits" })
+	@ParameterizedTest
+	void testProcessNewVisitFormConflict(boolean hxRequest, String expectedView) throws Exception {
+		mockMvc
+			.perform(
+					toggleHtmx(post("/owners/{ownerId}/pets/{petId}/visits/new", TEST_OWNER_ID, TEST_PET_ID), hxRequest)
+						.param("petVersion", "0")
+						.param("description", "Visit Description"))
+			.andExpect(model().attributeHasErrors("visit"))
+			.andExpect(status().isOk())
+			.andExpect(view().name(expectedView))
+			.andExpect(content().string(containsString("id=\"conflict\"")))
+			.andExpect(content().string(containsString("name=\"petVersion\" value=\"1\"")));
+		verify(this.visits, never()).insert(any(), any());
+	}
+
 }
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.owner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.samples.petclinic.jdbc.StatementCounter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Compares adding a visit by merging the whole {@link Owner} aggregate, as the visit form
+ * used to, with inserting it through {@link VisitRepository#insert(Integer, Visit)}, for
+ * an owner with many pets and visits. Reports latency and allocated bytes per added
+ * visit, logged at info level. Run with <code>-Dbenchmark=true</code>, e.g.
+ * <code>./mvnw test -Dtest=VisitInsertBenchmarkTests -Dbenchmark=true</code>.
+ */
+@SpringBootTest
+@Import(StatementCounter.Configuration.class)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class VisitInsertBenchmarkTests {
+
+	private static final Log logger = LogFactory.getLog(VisitInsertBenchmarkTests.class);
+
+	private static final int PETS = 50;
+
+	private static final int VISITS_PER_PET = 20;
+
+	private static final int WARMUP = 200;
+
+	private static final int ITERATIONS = 1000;
+
+	@Autowired
+	private OwnerRepository owners;
+
+	@Autowired
+	private VisitRepository visits;
+
+	@Autowired
+	private StatementCounter statements;
+
+	private TransactionTemplate transactions;
+
+	private Integer ownerId;
+
+	private Integer petId;
+
+	@Autowired
+	void setTransactionManager(PlatformTransactionManager transactionManager) {
+		this.transactions = new TransactionTemplate(transactionManager);
+	}
+
+	@BeforeEach
+	void createOwnerWithManyPets() {
+		Owner owner = new Owner();
+		owner.setFirstName("Bench");
+		owner.setLastName("Mark");
+		owner.setAddress("1 Benchmark Rd.");
+		owner.setCity("Madison");
+		owner.setTelephone("6085550000");
+		PetType type = this.owners.findPetTypes().get(0);
+		for (int i = 0; i < PETS; i++) {
+			Pet pet = new Pet();
+			pet.setName("pet" + i);
+			pet.setBirthDate(LocalDate.of(2020, 1, 1));
+			pet.setType(type);
+			for (int j = 0; j < VISITS_PER_PET; j++) {
+				pet.addVisit(visit());
+			}
+			owner.addPet(pet);
+		}
+		this.owners.save(owner);
+		this.ownerId = owner.getId();
+		this.petId = this.owners.findById(this.ownerId).getPets().get(0).getId();
+	}
+
+	@Test
+	void compareVisitInsertPaths() {
+		Result merge = measure("merge owner aggregate", () -> this.transactions.executeWithoutResult(status -> {
+			Owner owner = this.owners.findById(this.ownerId);
+			owner.addVisit(this.petId, visit());
+			this.owners.save(owner);
+		}));
+		Result insert = measure("insert visit", () -> this.visits.insert(this.petId, visit()));
+
+		logger.info(merge);
+		logger.info(insert);
+		assertThat(insert.statements()).isEqualTo(1);
+		assertThat(insert.statements()).isLessThan(merge.statements());
+		assertThat(insert.bytes()).isLessThan(merge.bytes());
+	}
+
+	private Result measure(String name, Runnable addVisit) {
+		for (int i = 0; i < WARMUP; i++) {
+			addVisit.run();
+		}
+		ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		int statements = this.statements.count(() -> {
+			addVisit.run();
+			return null;
+		});
+		long allocated = threads.getThreadAllocatedBytes(thread);
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			addVisit.run();
+		}
+		long nanos = System.nanoTime() - start;
+		allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+		return new Result(name, statements, nanos / ITERATIONS / 1000.0, allocated / ITERATIONS);
+	}
+
+	private static Visit visit() {
+		Visit visit = new Visit();
+		visit.setDescription("benchmark");
+		return visit;
+	}
+
+	private record Result(String name, int statements, double micros, long bytes) {
+
+		@Override
+		public String toString() {
+			return String.format("%-22s %3d statements %10.1f us/op %12d B/op", this.name, this.statements, this.micros,
+					this.bytes);
+		}
+
+	}
+
+}
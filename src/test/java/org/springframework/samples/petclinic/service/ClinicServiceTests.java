@@ -20,20 +20,32 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import java.time.LocalDate;
 import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
 
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.samples.petclinic.owner.Owner;
 import org.springframework.samples.petclinic.owner.OwnerRepository;
+import org.springframework.samples.petclinic.owner.OwnerSummary;
 import org.springframework.samples.petclinic.owner.Pet;
 import org.springframework.samples.petclinic.owner.PetType;
 import org.springframework.samples.petclinic.owner.Visit;
+import org.springframework.samples.petclinic.vet.Specialty;
 import org.springframework.samples.petclinic.vet.Vet;
 import org.springframework.samples.petclinic.vet.VetRepository;
 import org.springframework.stereotype.Service;
@@ -67,7 +79,8 @@ import org.springframework.transaction.annotation.Transactional;
  * @author Michael Isvy
  * @author Dave Syer
  */
-@DataJpaTest(includeFilters = @ComponentScan.Filter(Service.class))
+@DataJpaTest(includeFilters = @ComponentScan.Filter(Service.class),
+		properties = "spring.jpa.properties.hibernate.generate_statistics=true")
 // Ensure that if the mysql profile is active we connect to the real database:
 @AutoConfigureTestDatabase(replace = Replace.NONE)
 // @TestPropertySource("/application-postgres.properties")
@@ -79,6 +92,9 @@ class ClinicServiceTests {
 	@Autowired
 	protected VetRepository vets;
 
+	@Autowired
+	protected TestEntityManager entityManager;
+
 	Pageable pageable;
 
 	@Test
@@ -90,6 +106,65 @@ class ClinicServiceTests {
 		assertThat(owners).isEmpty();
 	}
 
+	@Test
+	void shouldFindOwnersByLastNameIgnoringCase() {
+		assertThat(this.owners.countByLastName("DAVIS")).isEqualTo(2);
+		assertThat(this.owners.findByLastNameAfter("mct", "", 0, Limit.of(5))).extracting(OwnerSummary::lastName)
+			.containsExactly("McTavish");
+	}
+
+	@Test
+	void shouldFindOwnersByLastNameIgnoringDefaultLocale() {
+		Locale locale = Locale.getDefault();
+		// the Turkish upper case I lower-cases to a dotless i
+		Locale.setDefault(Locale.forLanguageTag("tr"));
+		try {
+			assertThat(this.owners.countByLastName("DAVIS")).isEqualTo(2);
+		}
+		finally {
+			Locale.setDefault(locale);
+		}
+	}
+
+	@Test
+	void shouldSearchLastNameKeyByIndex() {
+		// H2 only: the prefix search must be a range scan of the last_name_key index
+		String plan = (String) this.entityManager.getEntityManager()
+			.createNativeQuery(
+					"EXPLAIN SELECT id FROM owners WHERE last_name_key LIKE 'dav%' ORDER BY last_name_key, id")
+			.getSingleResult();
+		assertThat(plan).containsIgnoringCase("owners_last_name_key");
+	}
+
+	@Test
+	void shouldFindOwnerSliceByLastName() {
+		Slice<OwnerSummary> owners = this.owners.findSliceByLastName("", PageRequest.of(0, 5));
+		assertThat(owners).extracting(OwnerSummary::lastName)
+			.containsExactly("Black", "Coleman", "Davis", "Davis", "Escobito");
+		assertThat(owners.hasNext()).isTrue();
+		assertThat(owners.getContent().get(1).pets()).isEqualTo("Max, Samantha");
+		assertThat(owners.getContent().get(2).address()).isEqualTo("638 Cardinal Ave.");
+
+		owners = this.owners.findSliceByLastName("", PageRequest.of(1, 5));
+		assertThat(owners).hasSize(5);
+		assertThat(owners.hasNext()).isFalse();
+
+		assertThat(this.owners.countByLastName("Davis")).isEqualTo(2);
+		assertThat(this.owners.countByLastName("")).isEqualTo(10);
+	}
+
+	@Test
+	void shouldScrollOwnersByLastName() {
+		List<OwnerSummary> owners = this.owners.findByLastNameAfter("", "davis", 2, Limit.of(2));
+		assertThat(owners).extracting(OwnerSummary::id).containsExactly(4, 8);
+
+		owners = this.owners.findByLastNameAfter("D", "", 0, Limit.of(5));
+		assertThat(owners).extracting(OwnerSummary::id).containsExactly(2, 4);
+
+		owners = this.owners.findByLastNameBefore("", "escobito", 8, Limit.of(2));
+		assertThat(owners).extracting(OwnerSummary::id).containsExactly(4, 2);
+	}
+
 	@Test
 	void shouldFindSingleOwnerWithPet() {
 		Owner owner = this.owners.findById(1);
@@ -99,6 +174,48 @@ class ClinicServiceTests {
 		assertThat(owner.getPets().get(0).getType().getName()).isEqualTo("cat");
 	}
 
+	@ParameterizedTest
+	@CsvSource({ "1,0", "1,1", "3,4", "8,10" })
+	void shouldLoadOwnerDetailsWithTwoStatements(int petCount, int visitsPerPet) {
+		Owner owner = new Owner();
+		owner.setFirstName("Sam");
+		owner.setLastName("Schultz");
+		owner.setAddress("4, Evans Street");
+		owner.setCity("Wollongong");
+		owner.setTelephone("4444444444");
+		List<PetType> types = this.owners.findPetTypes();
+		for (int i = 0; i < petCount; i++) {
+			Pet pet = new Pet();
+			pet.setName("pet" + i);
+			pet.setType(types.get(i % types.size()));
+			pet.setBirthDate(LocalDate.now());
+			for (int j = 0; j < visitsPerPet; j++) {
+				Visit visit = new Visit();
+				visit.setDescription("visit" + j);
+				pet.addVisit(visit);
+			}
+			owner.addPet(pet);
+		}
+		this.owners.save(owner);
+		this.entityManager.flush();
+		this.entityManager.clear();
+
+		Statistics statistics = this.entityManager.getEntityManager()
+			.getEntityManagerFactory()
+			.unwrap(SessionFactory.class)
+			.getStatistics();
+		statistics.clear();
+
+		owner = this.owners.findById(owner.getId());
+		// touch everything the owner details page renders
+		assertThat(owner.getPets()).hasSize(petCount).allSatisfy(pet -> {
+			assertThat(pet.getType().getName()).isNotNull();
+			assertThat(pet.getVisits()).hasSize(visitsPerPet);
+		});
+		// one statement for owner, pets and types, one subselect for all visits
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+	}
+
 	@Test
 	@Transactional
 	void shouldInsertOwner() {
@@ -193,6 +310,21 @@ class ClinicServiceTests {
 		assertThat(vet.getSpecialties().get(1).getName()).isEqualTo("surgery");
 	}
 
+	@Test
+	void shouldFindVetsWithSpecialtiesInOneStatement() {
+		Statistics statistics = this.entityManager.getEntityManager()
+			.getEntityManagerFactory()
+			.unwrap(SessionFactory.class)
+			.getStatistics();
+		this.entityManager.getEntityManager().getEntityManagerFactory().getCache().evictAll();
+		statistics.clear();
+
+		List<Vet> vets = this.vets.findAllWithSpecialties();
+		assertThat(vets).extracting(Vet::getId).containsExactly(1, 2, 3, 4, 5, 6);
+		assertThat(vets.get(2).getSpecialties()).extracting(Specialty::getName).containsExactly("dentistry", "surgery");
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+	}
+
 	@Test
 	@Transactional
 	void shouldAddNewVisitForPet() {
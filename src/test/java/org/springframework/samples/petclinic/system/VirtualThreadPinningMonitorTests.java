@@ -0,0 +1,83 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.system;
+
+import java.time.Duration;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests for {@link VirtualThreadPinningMonitor}.
+ */
+class VirtualThreadPinningMonitorTests {
+
+	private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+		.withBean(MeterRegistry.class, SimpleMeterRegistry::new)
+		.withUserConfiguration(VirtualThreadPinningMonitor.class)
+		.withPropertyValues("petclinic.threads.pinned-threshold=10ms");
+
+	@Test
+	void testNotActiveOnPlatformThreads() {
+		this.contextRunner.withPropertyValues("spring.threads.virtual.enabled=false")
+			.run(context -> assertThat(context).doesNotHaveBean(VirtualThreadPinningMonitor.class));
+	}
+
+	@Test
+	@EnabledForJreRange(min = JRE.JAVA_21)
+	void testRecordsPinnedVirtualThread() {
+		this.contextRunner.withPropertyValues("spring.threads.virtual.enabled=true").run(context -> {
+			assertThat(context).hasSingleBean(VirtualThreadPinningMonitor.class);
+			SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor();
+			executor.setVirtualThreads(true);
+			Object monitor = new Object();
+			Future<?> pinning = executor.submit(() -> {
+				synchronized (monitor) {
+					sleep(Duration.ofMillis(100));
+				}
+			});
+			pinning.get();
+			Timer pinned = context.getBean(MeterRegistry.class).get("jvm.threads.virtual.pinned").timer();
+			// the events reach the stream when the recording is flushed, about once a
+			// second
+			long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+			while (pinned.count() == 0 && System.nanoTime() < deadline) {
+				sleep(Duration.ofMillis(100));
+			}
+			assertThat(pinned.count()).isPositive();
+		});
+	}
+
+	private static void sleep(Duration duration) {
+		try {
+			Thread.sleep(duration.toMillis());
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.samples.petclinic.vet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+
+/**
+ * Test class for {@link VetDirectory}
+ */
+@ExtendWith(MockitoExtension.class)
+class VetDirectoryTests {
+
+	@Mock
+	private VetRepository vets;
+
+	private VetDirectory directory;
+
+	@BeforeEach
+	void setup() {
+		List<Vet> all = new ArrayList<>();
+		for (int id = 1; id <= 6; id++) {
+			all.add(vet(id));
+		}
+		given(this.vets.findAllWithSpecialties()).willReturn(all);
+		this.directory = new VetDirectory(this.vets, event -> {
+		});
+	}
+
+	@Test
+	void shouldSlicePagesFromOneSnapshot() {
+		Page<Vet> first = this.directory.findPage(1, 5);
+		assertThat(first).extracting(Vet::getId).containsExactly(1, 2, 3, 4, 5);
+		assertThat(first.getTotalPages()).isEqualTo(2);
+		assertThat(first.getTotalElements()).isEqualTo(6);
+
+		assertThat(this.directory.findPage(2, 5)).extracting(Vet::getId).containsExactly(6);
+		assertThat(this.directory.findPage(3, 5)).isEmpty();
+		assertThat(this.directory.findAll()).hasSize(6);
+		verify(this.vets, times(1)).findAllWithSpecialties();
+	}
+
+	@Test
+	void shouldRefreshSnapshot() {
+		this.directory.findAll();
+		given(this.vets.findAllWithSpecialties()).willReturn(List.of(vet(1)));
+		this.directory.refresh();
+		assertThat(this.directory.findAll()).extracting(Vet::getId).containsExactly(1);
+		assertThat(this.directory.findPage(1, 5).getTotalPages()).isEqualTo(1);
+	}
+
+	@Test
+	void shouldLoadSnapshotOnceForConcurrentFirstReaders() throws Exception {
+		List<Vet> all = List.of(vet(1));
+		given(this.vets.findAllWithSpecialties()).willAnswer(invocation -> {
+			Thread.sleep(100);
+			return all;
+		});
+		List<Long> refreshed = new CopyOnWriteArrayList<>();
+		VetDirectory directory = new VetDirectory(this.vets,
+				event -> refreshed.add(((VetDirectoryRefreshed) event).generation()));
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Callable<List<Vet>>> readers = Collections.nCopies(4, directory::findAll);
+			for (Future<List<Vet>> result : executor.invokeAll(readers)) {
+				assertThat(result.get()).extracting(Vet::getId).containsExactly(1);
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+		verify(this.vets, times(1)).findAllWithSpecialties();
+		assertThat(refreshed).containsExactly(1L);
+	}
+
+	private Vet vet(int id) {
+		Vet vet = new Vet();
+		vet.setId(id);
+		vet.setFirstName("First" + id);
+		vet.setLastName("Last" + id);
+		return vet;
+	}
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2012-2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.samples.petclinic.vet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Test class for {@link VetsHttpMessageConverter}
+ */
+class VetsHttpMessageConverterTests {
+
+	@Test
+	void shouldWriteCachedBodyUntilVetsChange() throws Exception {
+		VetsHttpMessageConverter converter = new VetsHttpMessageConverter(new ObjectMapper());
+		List<Vet> list = new ArrayList<>(List.of(vet(1, "James", "Carter")));
+		Vets vets = new Vets(list);
+
+		String first = write(converter, vets, MediaType.APPLICATION_JSON);
+		list.add(vet(2, "Helen", "Leary"));
+
+		assertThat(write(converter, vets, MediaType.APPLICATION_JSON)).isEqualTo(first).doesNotContain("Leary");
+		assertThat(write(converter, new Vets(list), MediaType.APPLICATION_JSON)).contains("Leary");
+	}
+
+	@Test
+	void shouldWriteJsonAndXml() throws Exception {
+		VetsHttpMessageConverter converter = new VetsHttpMessageConverter(new ObjectMapper());
+		Vets vets = new Vets(List.of(vet(1, "James", "Carter")));
+
+		assertThat(write(converter, vets, MediaType.APPLICATION_JSON)).startsWith("{\"vetList\":[");
+		assertThat(write(converter, vets, MediaType.APPLICATION_XML)).contains("<vets><vetList>");
+	}
+
+	private String write(VetsHttpMessageConverter converter, Vets vets, MediaType mediaType) throws Exception {
+		MockHttpOutputMessage message = new MockHttpOutputMessage();
+		converter.write(vets, mediaType, message);
+		assertThat(message.getHeaders().getContentLength()).isEqualTo(message.getBodyAsBytes().length);
+		return message.getBodyAsString();
+	}
+
+	private Vet vet(int id, String firstName, String lastName) {
+		Vet vet = new Vet();
+		vet.setId(id);
+		vet.setFirstName(firstName);
+		vet.setLastName(lastName);
+		return vet;
+	}
+
+}